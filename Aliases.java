@@ -0,0 +1,133 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+public final class Aliases {
+
+    public static final byte UNSET = 0, INT = 1, STRING = 2;
+
+    public byte[] kinds;
+    public int[] ints;
+    public String[] strings;
+    private String[] names;
+    private int size;
+    private final HashMap<String, Integer> slots = new HashMap<>();
+
+    public Aliases(List<String> names) {
+        int capacity = Math.max(16, names.size());
+        kinds = new byte[capacity];
+        ints = new int[capacity];
+        strings = new String[capacity];
+        this.names = new String[capacity];
+        for (String name : names) {
+            slot(name);
+        }
+    }
+
+    public int slot(String name) {
+        Integer slot = slots.get(name);
+        if (slot != null) {
+            return slot;
+        }
+        if (size == names.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            ints = Arrays.copyOf(ints, capacity);
+            strings = Arrays.copyOf(strings, capacity);
+            names = Arrays.copyOf(names, capacity);
+        }
+        names[size] = name;
+        slots.put(name, size);
+        return size++;
+    }
+
+    public int find(String name) {
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    public int getInt(int slot) {
+        if (slot >= 0 && kinds[slot] == INT) {
+            return ints[slot];
+        }
+        return Integer.parseInt(getString(slot));
+    }
+
+    public String getString(int slot) {
+        if (slot < 0) {
+            return null;
+        }
+        switch (kinds[slot]) {
+            case INT:
+                return Integer.toString(ints[slot]);
+            case STRING:
+                return strings[slot];
+            default:
+                return null;
+        }
+    }
+
+    public void load(int slot, Value value) {
+        if (slot >= 0 && kinds[slot] == INT) {
+            value.set(ints[slot]);
+        } else {
+            value.set(getString(slot));
+        }
+    }
+
+    public void setInt(int slot, int value) {
+        kinds[slot] = INT;
+        ints[slot] = value;
+        strings[slot] = null;
+    }
+
+    public void setString(int slot, String value) {
+        kinds[slot] = STRING;
+        strings[slot] = value;
+    }
+
+    public void store(int slot, Value value) {
+        if (value.isInt) {
+            setInt(slot, value.num);
+        } else {
+            setString(slot, value.str);
+        }
+    }
+
+    public void remove(int slot) {
+        kinds[slot] = UNSET;
+        strings[slot] = null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String name(int slot) {
+        return names[slot];
+    }
+
+    public List<String> names() {
+        List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(names[i]);
+        }
+        return list;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < size; i++) {
+            if (kinds[i] == UNSET) {
+                continue;
+            }
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(names[i]).append('=').append(getString(i));
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,259 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+public final class Aot {
+
+    public static final String MAIN_CLASS = "SymplApp";
+    private static final int CHUNK = 256;
+
+    public static void main(String[] args) {
+        String input = null;
+        String output = "app.jar";
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-o") && i + 1 < args.length) {
+                output = args[++i];
+            } else if (input == null && !args[i].startsWith("-")) {
+                input = args[i];
+            } else {
+                usage();
+            }
+        }
+        if (input == null) {
+            usage();
+        }
+        if (!Jit.isAvailable()) {
+            System.err.println("aot: no system Java compiler, run with a JDK");
+            System.exit(1);
+        }
+        Program program = Program.compile(Source.map(input));
+        byte[] bytes = Jit.JavaSource.compile(MAIN_CLASS, source(program), "aot");
+        if (bytes == null) {
+            System.exit(1);
+        }
+        try {
+            writeJar(new File(output), bytes, text(program.lines));
+        } catch (IOException e) {
+            System.err.println("aot: cannot write " + output + ": " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("Wrote " + output + " (" + program.code.length + " instructions)");
+    }
+
+    private static void usage() {
+        System.err.println("Usage: java Main aot <file.sympl> [-o app.jar]");
+        System.exit(1);
+    }
+
+    public static Operand operand(Operand.Kind kind, String text, Operand inner, int slot) {
+        Operand operand = new Operand(kind, text, inner);
+        operand.slot = slot;
+        return operand;
+    }
+
+    public static Instruction instruction(Op op, Operand[] args, int line, String label, String message, Instruction[] parts, int target) {
+        Instruction instruction = new Instruction(op, args, line, label, message, parts);
+        instruction.target = target;
+        return instruction;
+    }
+
+    public static Source lines(Class<?> app) {
+        try (InputStream in = app.getResourceAsStream(app.getSimpleName() + ".sympl")) {
+            if (in == null) {
+                throw new IllegalStateException("The source of " + app.getSimpleName() + " is missing from the jar");
+            }
+            return Source.of(ByteBuffer.wrap(in.readAllBytes()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String source(Program program) {
+        Instruction[] code = program.code;
+        int chunks = (code.length + CHUNK - 1) / CHUNK;
+        StringBuilder sb = new StringBuilder();
+        StringBuilder fills = new StringBuilder();
+        sb.append("import java.util.*;\n\n");
+        sb.append("public final class ").append(MAIN_CLASS).append(" implements Jit.Code {\n\n");
+        sb.append("    public static void main(String[] args) {\n");
+        sb.append("        Options options = Main.options(args);\n");
+        sb.append("        Main.run(() -> new Compiler(program(), new ").append(MAIN_CLASS).append("(), options));\n");
+        sb.append("    }\n\n");
+
+        sb.append("    static Program program() {\n");
+        sb.append("        Source lines = Aot.lines(").append(MAIN_CLASS).append(".class);\n");
+        List<String> aliases = new ArrayList<>();
+        for (int i = 0; i < program.aliases.size(); i++) {
+            aliases.add("aliases[" + i + "] = " + literal(program.aliases.get(i)));
+        }
+        sb.append("        String[] aliases = new String[").append(aliases.size()).append("];\n");
+        fill(sb, fills, "aliases", "String[]", aliases);
+        List<String> labels = new ArrayList<>();
+        for (Map.Entry<String, Integer> label : program.labels.entrySet()) {
+            labels.add("labels.put(" + literal(label.getKey()) + ", " + label.getValue() + ")");
+        }
+        sb.append("        Map<String, Integer> labels = new LinkedHashMap<>();\n");
+        fill(sb, fills, "labels", "Map<String, Integer>", labels);
+        List<String> instructions = new ArrayList<>();
+        for (int k = 0; k < code.length; k++) {
+            instructions.add("code[" + k + "] = " + instruction(code[k]));
+        }
+        sb.append("        Instruction[] code = new Instruction[").append(code.length).append("];\n");
+        fill(sb, fills, "code", "Instruction[]", instructions);
+        sb.append("        return new Program(").append(literal(program.header)).append(", lines, code, Arrays.asList(aliases), labels);\n");
+        sb.append("    }\n\n");
+        sb.append(fills);
+
+        sb.append("    public int run(Compiler c) {\n");
+        sb.append("        int ip = 0;\n");
+        sb.append("        while (ip < ").append(code.length).append(") {\n");
+        sb.append("            switch (ip / ").append(CHUNK).append(") {\n");
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            sb.append("                case ").append(chunk).append(":\n");
+            sb.append("                    ip = run").append(chunk).append("(c, ip);\n");
+            sb.append("                    if (ip < ").append((chunk + 1) * CHUNK).append(") ip = c.checkpoint(ip);\n");
+            sb.append("                    break;\n");
+        }
+        sb.append("                default:\n");
+        sb.append("                    return ip;\n");
+        sb.append("            }\n");
+        sb.append("        }\n");
+        sb.append("        return ip;\n");
+        sb.append("    }\n");
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            sb.append("\n    private static int run").append(chunk).append("(Compiler c, int ip) {\n");
+            Jit.emitRegion(sb, code, chunk * CHUNK, Math.min(code.length, (chunk + 1) * CHUNK) - 1, true);
+            sb.append("    }\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static void fill(StringBuilder sb, StringBuilder fills, String name, String type, List<String> statements) {
+        for (int chunk = 0; chunk * CHUNK < statements.size(); chunk++) {
+            sb.append("        ").append(name).append(chunk).append('(').append(name).append(");\n");
+            fills.append("    private static void ").append(name).append(chunk).append('(').append(type).append(' ').append(name).append(") {\n");
+            for (int i = chunk * CHUNK; i < Math.min(statements.size(), (chunk + 1) * CHUNK); i++) {
+                fills.append("        ").append(statements.get(i)).append(";\n");
+            }
+            fills.append("    }\n\n");
+        }
+    }
+
+    private static byte[] text(Source lines) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines.lines(); i++) {
+            sb.append(lines.line(i)).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String instruction(Instruction ins) {
+        if (ins == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder("Aot.instruction(Op.").append(ins.op.name()).append(", new Operand[]{");
+        for (int i = 0; i < ins.args.length; i++) {
+            sb.append(i == 0 ? "" : ", ").append(operand(ins.args[i]));
+        }
+        sb.append("}, ").append(ins.line).append(", ").append(literal(ins.label)).append(", ").append(literal(ins.message)).append(", ");
+        if (ins.parts == null) {
+            sb.append("null");
+        } else {
+            sb.append("new Instruction[]{");
+            for (int i = 0; i < ins.parts.length; i++) {
+                sb.append(i == 0 ? "" : ", ").append(instruction(ins.parts[i]));
+            }
+            sb.append('}');
+        }
+        return sb.append(", ").append(ins.target).append(')').toString();
+    }
+
+    private static String operand(Operand operand) {
+        if (operand == null) {
+            return "null";
+        }
+        return "Aot.operand(Operand.Kind." + operand.kind.name() + ", " + literal(operand.text) + ", "
+                + operand(operand.inner) + ", " + operand.slot + ")";
+    }
+
+    private static String literal(String s) {
+        if (s == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                sb.append('\\').append(ch);
+            } else if (ch < 0x20 || ch > 0x7e) {
+                sb.append(String.format("\\u%04x", (int) ch));
+            } else {
+                sb.append(ch);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static void writeJar(File output, byte[] app, byte[] text) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, MAIN_CLASS);
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(output), manifest)) {
+            Path runtime = runtime();
+            if (Files.isDirectory(runtime)) {
+                try (Stream<Path> files = Files.walk(runtime)) {
+                    for (Path file : (Iterable<Path>) files::iterator) {
+                        String name = runtime.relativize(file).toString().replace(File.separatorChar, '/');
+                        if (name.endsWith(".class") && !name.equals(MAIN_CLASS + ".class")) {
+                            entry(jar, name, Files.readAllBytes(file));
+                        }
+                    }
+                }
+            } else {
+                try (JarFile source = new JarFile(runtime.toFile())) {
+                    for (JarEntry entry : (Iterable<JarEntry>) source.stream()::iterator) {
+                        if (entry.getName().endsWith(".class") && !entry.getName().equals(MAIN_CLASS + ".class")) {
+                            try (InputStream in = source.getInputStream(entry)) {
+                                entry(jar, entry.getName(), in.readAllBytes());
+                            }
+                        }
+                    }
+                }
+            }
+            entry(jar, MAIN_CLASS + ".class", app);
+            entry(jar, MAIN_CLASS + ".sympl", text);
+        }
+    }
+
+    private static Path runtime() throws IOException {
+        try {
+            return Paths.get(Compiler.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void entry(JarOutputStream jar, String name, byte[] bytes) throws IOException {
+        jar.putNextEntry(new JarEntry(name));
+        jar.write(bytes);
+        jar.closeEntry();
+    }
+}
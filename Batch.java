@@ -0,0 +1,158 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+public final class Batch {
+
+    public enum Status {
+        OK, ERROR, BUDGET, TIMEOUT, CANCELLED
+    }
+
+    public static final class Result {
+        public final String file;
+        public final Status status;
+        public final long instructions;
+        public final long nanos;
+        public final String error;
+        public final byte[] output;
+
+        Result(String file, Status status, long instructions, long nanos, String error, byte[] output) {
+            this.file = file;
+            this.status = status;
+            this.instructions = instructions;
+            this.nanos = nanos;
+            this.error = error;
+            this.output = output;
+        }
+    }
+
+    public static List<Result> run(List<String> files, String[] flags, int parallelism) throws InterruptedException {
+        Semaphore permits = new Semaphore(Math.max(parallelism, 1));
+        ExecutorService executor = executor(parallelism);
+        List<Future<Result>> futures = new ArrayList<>();
+        try {
+            for (String file : files) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return run(file, flags);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            List<Result> results = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(new Result(files.get(i), Status.ERROR, 0, 0, String.valueOf(e.getCause()), new byte[0]));
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static Result run(String file, String[] flags) {
+        String[] args = new String[flags.length + 1];
+        System.arraycopy(flags, 0, args, 0, flags.length);
+        args[flags.length] = file;
+        Options options = Options.parse(args);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        options.sink = Channels.newChannel(output);
+        options.headless = true;
+        options.report = false;
+        options.jmx = false;
+        String name = Paths.get(file).getFileName().toString().replaceFirst("\\.sympl$", "");
+        options.profileOutput = Profiler.unique(options.profileOutput == null ? name + "-profile" : options.profileOutput + "-" + name);
+        long start = System.nanoTime();
+        try {
+            Compiler compiler = new Compiler(options);
+            return new Result(file, Status.OK, compiler.executed, System.nanoTime() - start, null, output.toByteArray());
+        } catch (SymplException e) {
+            String error = e.getMessage() + " at " + e.ip + ": " + e.line;
+            return new Result(file, Status.valueOf(e.reason.name()), e.executed, System.nanoTime() - start, error, output.toByteArray());
+        } catch (RuntimeException | StackOverflowError e) {
+            return new Result(file, Status.ERROR, 0, System.nanoTime() - start, e.toString(), output.toByteArray());
+        }
+    }
+
+    private static ExecutorService executor(int parallelism) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newFixedThreadPool(Math.max(parallelism, 1), r -> {
+                Thread thread = new Thread(r, "sympl-batch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public static int main(String[] args) throws IOException, InterruptedException {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        Path outputDir = null;
+        List<String> flags = new ArrayList<>();
+        List<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--parallel=")) {
+                try {
+                    parallelism = Integer.parseInt(arg.substring("--parallel=".length()));
+                } catch (NumberFormatException e) {
+                    System.err.println("Not a number: " + arg);
+                    return 1;
+                }
+            } else if (arg.startsWith("--output-dir=")) {
+                outputDir = Paths.get(arg.substring("--output-dir=".length()));
+            } else if (arg.startsWith("--")) {
+                flags.add(arg);
+            } else {
+                files.add(arg);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("usage: java Main batch [--parallel=N] [--budget=N] [--timeout=MS] [--seed=N] [--output-dir=DIR] [options] file.sympl...");
+            return 1;
+        }
+        try {
+            Options.parse(flags.toArray(new String[0]));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = run(files, flags.toArray(new String[0]), parallelism);
+        long failed = 0, instructions = 0;
+        for (Result result : results) {
+            if (outputDir != null) {
+                Files.createDirectories(outputDir);
+                Files.write(outputDir.resolve(Paths.get(result.file).getFileName() + ".out"), result.output);
+            } else if (result.output.length > 0) {
+                System.out.println("== " + result.file);
+                System.out.print(new String(result.output, StandardCharsets.UTF_8));
+            }
+        }
+        for (Result result : results) {
+            System.out.printf("%-9s %12d %10.1f ms  %s%s%n", result.status, result.instructions, result.nanos / 1e6, result.file,
+                    result.error == null ? "" : "  " + result.error);
+            failed += result.status == Status.OK ? 0 : 1;
+            instructions += result.instructions;
+        }
+        System.out.printf("%d programs, %d failed, %d instructions, %.1f ms%n", results.size(), failed, instructions, (System.nanoTime() - start) / 1e6);
+        return failed == 0 ? 0 : 1;
+    }
+}
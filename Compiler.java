@@ -1,66 +1,284 @@
+import java.awt.GraphicsEnvironment;
 import java.util.Queue;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 public class Compiler {
 
-    private Queue<Integer> left;
-    private Queue<Integer> right;
+    private static final int CHECK_INTERVAL = 4096;
+    private static final int RANDOM_CHUNK = 1024;
+
+    private IntDeque left;
+    private IntDeque right;
     private Queue<String> stringPool;
-    private HashMap<String, String> names;
-    private Display window = null;
-    private String[] codes;
-    private String[] cInst;
-    public static boolean vsync = false, fullscreen=false, customLoop = false;
+    private Aliases names;
+    private final BitSet labelSlots = new BitSet();
+    private final Value va = new Value(), vb = new Value();
+    private volatile Screen window = null;
+    private Source codes;
+    private Instruction[] program;
+    private Instruction cInst;
+    private boolean vsync = false, fullscreen=false, customLoop = false;
 
     private int ip;
-    private boolean printingStacks = false, printingInstructions = false, printingLabels = false, printingStringPool = false;
+    private boolean printingStacks = false, printingInstructions = false, printingLabels = false, printingStringPool = false, printingOptimized = false;
     private boolean colorizeStack = false, colorizeInstructions = false, colorizeLabels = false;
-    private boolean debugOption = false;
     private boolean stringFormatter = false, preWord = true, showFpsUps = false;
+    private boolean interpretOnly, headless, profiling;
+    private final String profileOutput;
+    private Profiler profiler;
+    private Metrics metrics;
+    private final boolean jmx;
+    private final String fileName;
+    private Output out;
+    private Trace trace;
+    private boolean liveTrace;
+    private long frames;
+    private final long started = System.nanoTime();
+    private final boolean report;
+    private final long budget, deadline;
+    private long limit;
+    long executed;
+    private Long seed;
+    SplittableRandom random;
+    private int[] randoms;
+    private Jit jit;
+    private Jit.Code aot;
 
     public Compiler(String fileName) {
-        codes = Util.readFile(fileName);
+        this(options(fileName));
+    }
+
+    public Compiler(Options options) {
+        this(options.cache ? ProgramCache.load(options.fileName, options.cacheDir) : Program.compile(Source.map(options.fileName)), null, options);
+    }
+
+    public Compiler(Program compiled, Jit.Code aot, Options options) {
+        this(options, aot, null);
+        prepare(compiled);
+        run();
+    }
+
+    Compiler(Options options, Jit.Code aot, Jit shared) {
+        interpretOnly = options.interpretOnly;
+        profiling = options.profile;
+        profileOutput = options.profileOutput;
+        headless = options.headless;
+        report = options.report;
+        budget = options.budget > 0 ? options.budget : Long.MAX_VALUE;
+        deadline = options.timeout > 0 ? started + TimeUnit.MILLISECONDS.toNanos(options.timeout) : 0;
+        seed = options.seed;
+        this.aot = aot;
+        this.jit = shared;
+        out = Output.open(options);
+        jmx = options.jmx;
+        liveTrace = options.liveTrace;
+        fileName = options.fileName;
         init();
-        startCompile();
+    }
+
+    private static Options options(String fileName) {
+        Options options = new Options();
+        options.fileName = fileName;
+        return options;
     }
 
     public void init(){
-        left = new LinkedList<>();
-        right = new LinkedList<>();
+        left = new IntDeque();
+        right = new IntDeque();
         stringPool = new LinkedList<>();
-        names = new HashMap<>();
     }
 
-    private void startCompile(){
-        compileOptions();
-        compileLabel();
-        compile();
+    void prepare(Program compiled){
+        codes = compiled.lines;
+        compileOptions(compiled.header);
+        out.setSectionBreaks(stringFormatter);
+        if (seed == null) {
+            seed = new SplittableRandom().nextLong();
+        }
+        random = new SplittableRandom(seed);
+        headless |= GraphicsEnvironment.isHeadless();
+        program = compiled.code;
+        names = new Aliases(compiled.aliases);
+        compileLabel(compiled.labels);
+        if (printingOptimized) {
+            out.print("Optimized program:\n" + Peephole.listing(program)).newline();
+        }
+        if (profiling) {
+            profiler = new Profiler(program, codes, profileOutput);
+        }
+        int traceFlags = traceFlags();
+        liveTrace &= traceFlags != 0;
+        if (traceFlags != 0 && !liveTrace) {
+            trace = new Trace(program, codes, traceFlags);
+        }
+        if (interpretOnly || profiling || trace != null || liveTrace || aot != null) {
+            jit = null;
+        } else if (jit == null && Jit.isAvailable()) {
+            jit = new Jit(program);
+        }
+        if (jmx) {
+            metrics = Metrics.register(this, fileName);
+            if (metrics != null) {
+                publishMetrics();
+            }
+        }
+    }
+
+    void run(){
+        limit = Math.min(budget, CHECK_INTERVAL);
+        try {
+            if (aot != null && trace == null && !liveTrace && !profiling && !interpretOnly) {
+                ip = aot.run(this);
+            }
+            if (trace != null || profiler != null || liveTrace) {
+                compileInstrumented();
+            } else {
+                compile();
+            }
+            if (window != null) {
+                window.noLoop();
+            }
+        } catch (SymplException e) {
+            throw e;
+        } catch (RuntimeException | StackOverflowError e) {
+            throw failed(e);
+        } finally {
+            finish();
+        }
+    }
+
+    private void finish() {
+        try {
+            printTrace();
+            if (profiler != null) {
+                profiler.write();
+            }
+            if (report && window instanceof HeadlessDisplay) {
+                out.flush();
+                printHeadlessReport();
+            }
+        } finally {
+            if (metrics != null) {
+                metrics.unregister();
+            }
+            out.close();
+        }
+    }
+
+    private void checkLimits() {
+        if (metrics != null) {
+            publishMetrics();
+        }
+        if (executed >= budget) {
+            throw limitReached(SymplException.Reason.BUDGET, "Instruction budget of " + budget + " exceeded");
+        }
+        if (deadline != 0 && System.nanoTime() - deadline > 0) {
+            throw limitReached(SymplException.Reason.TIMEOUT, "Timed out after " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw limitReached(SymplException.Reason.CANCELLED, "Interrupted");
+        }
+        if (window != null && window.isClosed()) {
+            ip = program.length;
+        }
+        limit = Math.min(budget, executed + CHECK_INTERVAL);
+    }
+
+    private SymplException limitReached(SymplException.Reason reason, String msg) {
+        int at = Math.min(ip, program.length - 1);
+        return new SymplException(reason, msg, at, sourceLine(at), executed, null);
+    }
+
+    private SymplException failed(Throwable e) {
+        int at = Math.min(ip, program.length - 1);
+        return new SymplException(SymplException.Reason.ERROR, e.toString(), at, sourceLine(at), executed, e);
+    }
+
+    private String sourceLine(int at) {
+        return at < 0 ? "" : codes.line(program[at].line);
     }
 
     private void compile(){
-        while (ip < codes.length) {
-            cInst = codes[ip].split(" ");
-            String token = cInst[0];
-            if (printingInstructions) printInstructions(token);
-            compileTokens(token);
-            if (debugOption) {
-                if (printingStacks) printStacks();
-                if (printingLabels) printLabels();
-                if (printingStringPool) printStringPool();
+        while (ip < program.length) {
+            cInst = program[ip];
+            int from = ip;
+            compileTokens(cInst.op);
+            if (jit != null && ip <= from) {
+                enterLoop(from);
+            }
+            if (++executed >= limit && ip <= from) {
+                checkLimits();
+            }
+        }
+    }
+
+    private void compileInstrumented(){
+        while (ip < program.length) {
+            cInst = program[ip];
+            int from = ip;
+            if (liveTrace && printingInstructions) {
+                printInstruction(from);
             }
+            if (profiler != null) {
+                long start = System.nanoTime();
+                compileTokens(cInst.op);
+                profiler.record(from, System.nanoTime() - start);
+            } else {
+                compileTokens(cInst.op);
+            }
+            if (trace != null) {
+                trace.record(from, left, right, stringPool.size(), names);
+            } else if (liveTrace) {
+                printState();
+            }
+            if (++executed >= limit && ip <= from) {
+                checkLimits();
+            }
+        }
+    }
+
+    private int traceFlags() {
+        int flags = 0;
+        if (printingInstructions) flags |= Trace.INSTRUCTIONS | (colorizeInstructions ? Trace.COLOR_INSTRUCTIONS : 0);
+        if (printingStacks) flags |= Trace.STACKS | (colorizeStack ? Trace.COLOR_STACKS : 0);
+        if (printingLabels) flags |= Trace.LABELS | (colorizeLabels ? Trace.COLOR_LABELS : 0);
+        if (printingStringPool) flags |= Trace.STRING_POOL;
+        return flags;
+    }
+
+    private void printTrace() {
+        if (trace == null) {
+            return;
+        }
+        Trace done = trace;
+        trace = null;
+        done.render(out, names);
+        printState();
+    }
+
+    private void printState() {
+        if (printingStacks) printStacks();
+        if (printingLabels) printLabels();
+        if (printingStringPool) printStringPool();
+    }
+
+    private void printInstruction(int at) {
+        out.print(ColorConst.GREEN).print(at).print(": ").print(ColorConst.RESET_COLOR);
+        if (colorizeInstructions) {
+            out.print(ColorConst.YELLOW + "instruction: ").text(codes.line(program[at].line)).print(ColorConst.RESET_COLOR);
+            out.print(ColorConst.RED + " token: ").print(program[at].op.token);
+        } else {
+            out.print("instruction: ").text(codes.line(program[at].line)).print(" token: ").print(program[at].op.token);
         }
+        out.newline().print(ColorConst.RESET_COLOR).newline();
     }
 
-    private void compileOptions() {
-        String options = codes[0];
-        if (!(options.charAt(0) == '_')) {
+    private void compileOptions(String options) {
+        if (options == null) {
             return;
         }
 
-        debugOption = true;
-        String[] modifiedOptions = new String[codes.length - 1];
-        System.arraycopy(codes, 1, modifiedOptions, 0, codes.length - 1);
-        codes = modifiedOptions;
         for (int i = 0; i < options.length(); i++) {
             switch (options.charAt(i)) {
                 case 'S':
@@ -81,6 +299,9 @@ public class Compiler {
                 case 'p':
                     printingStringPool = true;
                     break;
+                case 'o':
+                    printingOptimized = true;
+                    break;
                 case 'f':
                     stringFormatter = true;
                     break;
@@ -99,196 +320,266 @@ public class Compiler {
                 case 'C':
                     customLoop=true;
                     break;
+                case 'X':
+                    interpretOnly = true;
+                    break;
+                case 'H':
+                    headless = true;
+                    break;
+                case 'P':
+                    profiling = true;
+                    break;
+                case 'R': {
+                    int start = i + 1, end = start;
+                    if (end < options.length() && options.charAt(end) == '-') end++;
+                    while (end < options.length() && Character.isDigit(options.charAt(end))) end++;
+                    if (end > start && Character.isDigit(options.charAt(end - 1))) {
+                        if (seed == null) {
+                            try {
+                                seed = Long.parseLong(options.substring(start, end));
+                            } catch (NumberFormatException e) {
+                                throw new IllegalArgumentException("Seed out of range in the option line: R" + options.substring(start, end));
+                            }
+                        }
+                        i = end - 1;
+                    }
+                    break;
+                }
                 default:
             }
         }
 
     }
 
-    private void compileLabel() {
-        for (int i = 0; i < codes.length; i++) {
-            char token = codes[i].charAt(0);
-            if (token == '{') {
-                String label = codes[i].substring(1);
-                names.put(label, i + "");
+    private void compileLabel(Map<String, Integer> labels) {
+        for (Map.Entry<String, Integer> label : labels.entrySet()) {
+            int slot = names.slot(label.getKey());
+            names.setInt(slot, label.getValue());
+            labelSlots.set(slot);
+        }
+    }
+
+    private void enterLoop(int from) {
+        Jit.Code code = jit.backEdge(from, ip);
+        if (code != null) {
+            ip = code.run(this);
+            if (ip <= from) {
+                checkLimits();
             }
         }
     }
 
-    private void compileTokens(String token) {
+    int checkpoint(int at) {
+        ip = at;
+        checkLimits();
+        return ip;
+    }
+
+    Aliases aliases() {
+        return names;
+    }
+
+    int step(int k) {
+        ip = k;
+        cInst = program[k];
+        compileTokens(cInst.op);
+        return ip;
+    }
+
+    boolean condition(int k) {
+        ip = k;
+        cInst = program[k];
+        return doCondition();
+    }
+
+    private void compileTokens(Op token) {
         switch (token) {
-            case "[":
-            case "[.":
-            case "].":
-            case "]": {
+            case PUSH_LEFT:
+            case PUSH_LEFT_MANY:
+            case PUSH_RIGHT_MANY:
+            case PUSH_RIGHT: {
                 pushToStack();
                 ip++;
                 break;
             }
-            case "'": {
+            case PUSH_STRING: {
                 pushToStringStack();
                 ip++;
                 break;
             }
-            case "\\/":
+            case LEFT_TO_RIGHT:
                 popLeftToRight();
                 ip++;
                 break;
-            case "/\\":
+            case RIGHT_TO_LEFT:
                 popRightToLeft();
                 ip++;
                 break;
-            case "()":
+            case PEEK_RIGHT_TO_LEFT:
                 peekRightToLeft();
                 ip++;
                 break;
-            case ")(":
+            case PEEK_LEFT_TO_RIGHT:
                 peekLeftToRight();
                 ip++;
                 break;
-            case "~l":
-            case "~r":
-            case "~": {
+            case PRINT_LEFT:
+            case PRINT_RIGHT:
+            case PRINT: {
                 printToOutput();
                 ip++;
                 break;
             }
-            case "!": {
-                ip = doCondition() ? Integer.parseInt(names.get(cInst[4])) : ip + 1;
+            case BRANCH: {
+                ip = doCondition() ? jumpTarget() : ip + 1;
                 break;
             }
-            case "+":
-            case "concat":
-            case "-":
-            case "*":
-            case ":":
-            case "%": {
+            case ADD:
+            case CONCAT:
+            case SUB:
+            case MUL:
+            case DIV:
+            case MOD: {
                 doArithmetic();
                 ip++;
                 break;
             }
-            case ";": {
+            case DELETE: {
                 deleteAlias();
                 ip++;
                 break;
             }
-            case "sin":
-            case "cos":
-            case "tan":
-            case "atan":
-            case "atan2":
-            case "pow":
-            case "sqrt":
+            case SIN:
+            case COS:
+            case TAN:
+            case ATAN:
+            case ATAN2:
+            case POW:
+            case SQRT:
                 doTrigonometric();
                 ip++;
                 break;
-            case "^":
-            case ">":
-            case "<":
-            case "|":
-            case "&": {
+            case XOR:
+            case SHR:
+            case SHL:
+            case OR:
+            case AND: {
                 bitOperation();
                 ip++;
                 break;
             }
-            case "WC":
-            case "WBC":
-            case "WR":
-            case "WU":
-            case "WSA2S":
-            case "WNL":
-            case "WFPS":
-            case "GCS":
-            case "SCS":
+            case WINDOW:
+            case WINDOW_GRID:
+            case WINDOW_BC:
+            case RENDER:
+            case UPDATE:
+            case WINDOW_SA2S:
+            case NO_LOOP:
+            case FPS:
+            case GET_COLOR:
+            case SET_COLOR:
+            case SET_BLOCK_LEFT:
+            case SET_BLOCK_RIGHT:
+            case GET_BLOCK_LEFT:
+            case GET_BLOCK_RIGHT:
                 doGraphics();
                 ip++;
                 break;
-            case "#WRECT":
-            case "#WRECTC":
+            case RECT:
+            case RECT_COLORED:
                 addShape();
                 ip++;
                 break;
-            case "#":
+            case ALIAS:
                 addAlias();
                 ip++;
                 break;
-            case "$":
+            case SLEEP:
                 try {
-                    Thread.sleep(Integer.parseInt(getValue(cInst[1])));
+                    long millis = intValue(cInst.args[0]);
+                    if (deadline != 0) {
+                        millis = Math.min(millis, TimeUnit.NANOSECONDS.toMillis(Math.max(deadline - System.nanoTime(), 0)) + 1);
+                    }
+                    Thread.sleep(millis);
+                    if (deadline != 0) {
+                        checkLimits();
+                    }
                 } catch (InterruptedException e) {
-                    e.printStackTrace();
+                    Thread.currentThread().interrupt();
+                    checkLimits();
                 }
                 ip++;
                 break;
-            case "BD":
+            case BIN_TO_DEC:
                 convertBinaryToDecimal();
                 ip++;
                 break;
-            case "DB":
+            case DEC_TO_BIN:
                 convertDecimalToBinary();
                 ip++;
                 break;
-            case "rand":
-                addRandom();
+            case RAND:
+                pushIntoToken(random.nextInt(2), cInst.args[0]);
                 ip++;
                 break;
-            default: {
-                if (token.startsWith("}")) {
-                    gotoLabel();
-                    break;
-                } else if (token.startsWith("{")) {
-                    ip++;
-                    break;
-                }
-                doException("keyword is not implemented: " + token);
-            }
+            case RAND_INT:
+                pushIntoToken(randomInt(intValue(cInst.args[0]), intValue(cInst.args[1])), cInst.args[2]);
+                ip++;
+                break;
+            case RAND_LEFT:
+                fillRandom(left);
+                ip++;
+                break;
+            case RAND_RIGHT:
+                fillRandom(right);
+                ip++;
+                break;
+            case GOTO:
+                gotoLabel();
+                break;
+            case LABEL:
+            case NOP:
+                ip++;
+                break;
+            case INC_BRANCH:
+                incrementAndBranch();
+                break;
+            case ARITH_RECT:
+                arithmeticAndRect();
+                break;
+            default:
+                doException(cInst.message);
         }
     }
 
 
 
     private void printStacks() {
-        String msg = "";
         if (colorizeStack) {
-            msg += ColorConst.CYAN + "LEFT: " + left.toString();
-            msg += ColorConst.RESET_COLOR;
-            msg += ColorConst.PURPLE + " RIGHT: " + right.toString();
+            out.print(ColorConst.CYAN + "LEFT: ").print(left).print(ColorConst.RESET_COLOR);
+            out.print(ColorConst.PURPLE + " RIGHT: ").print(right);
         } else {
-            msg += "LEFT: " + left.toString() + " RIGHT: " + right.toString();
-        }
-
-        System.out.println(msg + "\n");
-    }
-
-    private void printInstructions(String token) {
-        String msg = ColorConst.GREEN + ip + ": " + ColorConst.RESET_COLOR;
-        if (colorizeInstructions) {
-            msg += ColorConst.YELLOW;
-            msg += "instruction: ";
-            msg += codes[ip];
-            msg += ColorConst.RESET_COLOR;
-            msg += ColorConst.RED;
-            msg += " token: ";
-            msg += token + "\n";
-        } else if (printingInstructions) {
-            msg += "instruction: " + codes[ip] + " token: " + token + "\n";
+            out.print("LEFT: ").print(left).print(" RIGHT: ").print(right);
         }
-        System.out.println(msg + ColorConst.RESET_COLOR);
+        out.newline().newline();
     }
 
     private void printLabels() {
-        System.out.println("Labels: " + (colorizeLabels ? ColorConst.CYAN : "") + names.toString() + (colorizeLabels ? ColorConst.RESET_COLOR : "") + "\n");
+        out.print("Labels: " + (colorizeLabels ? ColorConst.CYAN : "") + names.toString() + (colorizeLabels ? ColorConst.RESET_COLOR : "")).newline().newline();
     }
 
     private void printStringPool() {
-        printToConsole("String pool: " + (printingStringPool ? ColorConst.GREEN : "") + stringPool.toString() + ColorConst.RESET_COLOR + "\n");
+        beginOutput().print("String pool: " + (printingStringPool ? ColorConst.GREEN : "")).print(stringPool);
+        endOutput();
     }
 
     private boolean doCondition() {
-        int a = Integer.parseInt(getValue(cInst[2]));
-        int b = Integer.parseInt(getValue(cInst[3]));
+        return compare(cInst.args[0].text, intValue(cInst.args[1]), intValue(cInst.args[2]));
+    }
+
+    private boolean compare(String operator, int a, int b) {
         boolean cond;
-        switch (cInst[1]) {
+        switch (operator) {
             case "<": {
                 cond = a < b;
                 break;
@@ -311,23 +602,81 @@ public class Compiler {
         return cond;
     }
 
+    private void incrementAndBranch() {
+        Instruction add = cInst.parts[0], branch = cInst.parts[1];
+        int slot = add.args[0].slot;
+        Operand bound = branch.args[2];
+        if (names.kinds[slot] != Aliases.INT || !isIntAvailable(bound)) {
+            runParts();
+            return;
+        }
+        int value = add.op == Op.ADD ? names.ints[slot] + add.args[1].num : names.ints[slot] - add.args[1].num;
+        names.ints[slot] = value;
+        ip = compare(branch.args[0].text, value, intValue(bound)) ? branch.target : ip + 2;
+    }
+
+    private void arithmeticAndRect() {
+        Instruction[] parts = cInst.parts;
+        int last = parts.length - 1;
+        for (int j = 0; j < last; j++) {
+            Instruction part = parts[j];
+            Operand[] args = part.args;
+            if (part.op == Op.DIV || part.op == Op.MOD || !isIntAvailable(args[0]) || !isIntAvailable(args[1])) {
+                cInst = part;
+                doArithmetic();
+            } else {
+                int a = intValue(args[0]), b = intValue(args[1]);
+                names.setInt(args[2].slot, part.op == Op.ADD ? a + b : part.op == Op.SUB ? a - b : a * b);
+            }
+            ip++;
+        }
+        cInst = parts[last];
+        addShape();
+        ip++;
+    }
+
+    private boolean isIntAvailable(Operand operand) {
+        return operand.kind == Operand.Kind.LITERAL ? operand.isInt : names.kinds[operand.slot] == Aliases.INT;
+    }
+
+    private void runParts() {
+        for (Instruction part : cInst.parts) {
+            cInst = part;
+            compileTokens(part.op);
+        }
+    }
+
+    private int jumpTarget() {
+        if (cInst.target < 0) {
+            doException("Label does not exist: " + cInst.label);
+        }
+        return cInst.target;
+    }
+
     private void gotoLabel() {
-        ip = Integer.parseInt(names.get(cInst[0].substring(1))) + 1;
+        ip = jumpTarget();
     }
 
     private void printToOutput() {
         try {
-            switch (cInst[0]) {
-                case "~l":
-                    printToConsole(ColorConst.BLUE + left.toString() + ColorConst.RESET_COLOR + "\n");
+            switch (cInst.op) {
+                case PRINT_LEFT:
+                    beginOutput().print(ColorConst.BLUE).print(left);
+                    endOutput();
                     break;
-                case "~r":
-                    printToConsole(ColorConst.BLUE + right.toString() + ColorConst.RESET_COLOR + "\n");
+                case PRINT_RIGHT:
+                    beginOutput().print(ColorConst.BLUE).print(right);
+                    endOutput();
                     break;
-                case "~":
-                    printToConsole(ColorConst.BLUE + getValue(cInst[1]) + ColorConst.RESET_COLOR + "\n");
+                case PRINT: {
+                    String value = getValue(cInst.args[0]);
+                    beginOutput().print(ColorConst.BLUE).text(value);
+                    endOutput();
                     break;
+                }
             }
+        } catch (SymplException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             doException("Maybe your syntax is wrong at printing instruction");
@@ -335,21 +684,21 @@ public class Compiler {
     }
 
     private void pushToStack() {
-        switch (cInst[0]) {
-            case "[":
-                left.add(Integer.parseInt(getValue(cInst[1])));
+        switch (cInst.op) {
+            case PUSH_LEFT:
+                left.add(intValue(cInst.args[0]));
                 break;
-            case "]":
-                right.add(Integer.parseInt(getValue(cInst[1])));
+            case PUSH_RIGHT:
+                right.add(intValue(cInst.args[0]));
                 break;
-            case "].":
-                for (int i = 1; i < cInst.length; i++) {
-                    right.add(Integer.parseInt(getValue(cInst[i])));
+            case PUSH_RIGHT_MANY:
+                for (Operand arg : cInst.args) {
+                    right.add(intValue(arg));
                 }
                 break;
-            case "[.":
-                for (int i = 1; i < cInst.length; i++) {
-                    left.add(Integer.parseInt(getValue(cInst[i])));
+            case PUSH_LEFT_MANY:
+                for (Operand arg : cInst.args) {
+                    left.add(intValue(arg));
                 }
                 break;
             default:
@@ -358,34 +707,19 @@ public class Compiler {
     }
 
     private void pushToStringStack() {
-        stringPool.add(cInst[1]);
+        stringPool.add(cInst.args[0].text);
     }
 
     private void addAlias() {
-        String value;
-        String token = cInst[1].charAt(0) + "";
+        Operand source = cInst.args[0];
         try {
-            switch (token) {
-                case "/":
-                case "\\":
-                case ")":
-                case "(": {
-                    value = pop(token.charAt(0)) + "";
-                    break;
-                }
-                case "@": {
-                    value = getValue(cInst[1]) + "";
-                    break;
-                }
-                case ",":
-                case ".": {
-                    value = stringPop(token);
-                    break;
-                }
-                default:
-                    value = cInst[1];
+            load(source, va);
+            if (!va.isInt && va.str == null && (source.kind == Operand.Kind.ALIAS || source.kind == Operand.Kind.INDIRECT)) {
+                va.set("null");
             }
-            names.put(cInst[2], value);
+            names.store(cInst.args[1].slot, va);
+        } catch (SymplException e) {
+            throw e;
         } catch (ClassCastException e) {
             doException("Your value maybe not that what you need when you try to add to an alias");
         } catch (Exception e) {
@@ -396,18 +730,28 @@ public class Compiler {
 
     private void deleteAlias() {
         try {
-            names.remove(cInst[1]);
+            names.remove(cInst.args[0].slot);
+        } catch (SymplException e) {
+            throw e;
         } catch (Exception e) {
             doException("You are trying to delete an alias that does not exist");
         }
     }
 
     private void createWindow() {
-        int width = Integer.parseInt(getValue(cInst[1]));
-        int height = Integer.parseInt(getValue(cInst[2]));
-        String title = getValue(cInst[3]);
+        int width = intValue(cInst.args[0]);
+        int height = intValue(cInst.args[1]);
+        String title = getValue(cInst.args[2]);
+        boolean grid = cInst.op == Op.WINDOW_GRID;
+        int columns = grid ? intValue(cInst.args[3]) : width;
+        int rows = grid ? intValue(cInst.args[4]) : height;
         if (window == null) {
-            window = new Display(width, height, title);
+            Profiler.window(columns, rows, title);
+            if (headless) {
+                window = new HeadlessDisplay(columns, rows);
+            } else {
+                window = new Display(width, height, title, columns, rows, fullscreen, vsync, customLoop);
+            }
             new Thread(window).start();
         }
         window.setShowFpsUps(showFpsUps);
@@ -415,50 +759,84 @@ public class Compiler {
 
     private void doGraphics() {
 
-        switch (cInst[0]) {
-            case "WC":
+        switch (cInst.op) {
+            case WINDOW:
+            case WINDOW_GRID:
                 createWindow();
                 break;
-            case "WR":
+            case RENDER: {
+                Profiler.FrameEvent event = new Profiler.FrameEvent();
+                event.begin();
                 window.render();
+                event.frame = ++frames;
+                event.commit();
                 break;
-            case "WU":
+            }
+            case UPDATE:
                 window.update();
                 break;
-            case "WNL":
+            case NO_LOOP:
                 window.noLoop();
-                while (true) {
-                    try {
-                        Thread.sleep(1000000000);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                        System.exit(1);
-                    }
-                }
-            case "WFPS":
-                window.setFps(Integer.parseInt(getValue(cInst[1])));
+                ip = program.length;
+                break;
+            case FPS:
+                window.setFps(intValue(cInst.args[0]));
+                break;
+            case GET_COLOR:
+                int color = window.getColor(intValue(cInst.args[0]), intValue(cInst.args[1]));
+                pushIntoToken(color, cInst.args[2]);
                 break;
-            case "GCS":
-                int color = window.getColor(Integer.parseInt(getValue(cInst[1])), Integer.parseInt(getValue(cInst[2])));
-                pushIntoToken(color+"", cInst[3]);
+            case SET_COLOR:
+                window.setColor(intValue(cInst.args[0]), intValue(cInst.args[1]), intValue(cInst.args[2]));
                 break;
-            case "SCS":
-                window.setColor(Integer.parseInt(getValue(cInst[1])), Integer.parseInt(getValue(cInst[2])), Integer.parseInt(getValue(cInst[3])));
+            case SET_BLOCK_LEFT:
+                setBlock(left);
+                break;
+            case SET_BLOCK_RIGHT:
+                setBlock(right);
+                break;
+            case GET_BLOCK_LEFT:
+                getBlock(left);
+                break;
+            case GET_BLOCK_RIGHT:
+                getBlock(right);
                 break;
             default:
-                System.out.println(cInst[0]);
+                System.out.println(cInst.op.token);
                 doException("Unknown command in doGraphics");
         }
     }
 
+    private void setBlock(IntDeque stack) {
+        Operand[] args = cInst.args;
+        int x = intValue(args[0]), y = intValue(args[1]), width = intValue(args[2]), height = intValue(args[3]);
+        long count = (long) Math.max(width, 0) * Math.max(height, 0);
+        if (window == null) {
+            doException("The display isn't initialized");
+        }
+        if (stack.size() < count) {
+            doException("Not enough values on the stack for a " + width + "x" + height + " block");
+        }
+        int[] colors = new int[(int) count];
+        stack.poll(colors, 0, colors.length);
+        window.setBlock(x, y, width, height, colors);
+    }
+
+    private void getBlock(IntDeque stack) {
+        Operand[] args = cInst.args;
+        if (window == null) {
+            doException("The display isn't initialized");
+        }
+        int[] colors = window.getBlock(intValue(args[0]), intValue(args[1]), intValue(args[2]), intValue(args[3]));
+        stack.addAll(colors, 0, colors.length);
+    }
+
     private void popLeftToRight() {
-        right.addAll(left);
-        left.clear();
+        right.drainFrom(left);
     }
 
     private void popRightToLeft() {
-        left.addAll(right);
-        right.clear();
+        left.drainFrom(right);
     }
 
     private void peekRightToLeft() {
@@ -471,10 +849,10 @@ public class Compiler {
 
     private void addShape() {
         boolean colored = false;
-        switch (cInst[0]) {
-            case "#WRECT":
+        switch (cInst.op) {
+            case RECT:
                 break;
-            case "#WRECTC":
+            case RECT_COLORED:
                 colored = true;
                 break;
             default:
@@ -483,139 +861,166 @@ public class Compiler {
         if (window == null) {
             doException("The display isn't initialized");
         }
-        window.addRect(Integer.parseInt(getValue(cInst[1])), Integer.parseInt(getValue(cInst[2])), Integer.parseInt(getValue(cInst[3])), Integer.parseInt(getValue(cInst[4])), colored ? Integer.parseInt(getValue(cInst[5])) : 0);
+        Operand[] args = cInst.args;
+        window.addRect(intValue(args[0]), intValue(args[1]), intValue(args[2]), intValue(args[3]), colored ? intValue(args[4]) : 0);
     }
 
     private void doArithmetic() {
-        int a = 0, b = 0;
-        String result = "";
-        if (cInst[0].equals("concat")) {
-            pushIntoToken(getValue(cInst[1]) + "" + getValue(cInst[2]), cInst[3]);
+        int result = 0;
+        Operand[] args = cInst.args;
+        if (cInst.op == Op.CONCAT) {
+            pushIntoToken(getValue(args[0]) + "" + getValue(args[1]), args[2]);
             return;
         }
-        try {
-            a = Integer.parseInt(getValue(cInst[1]));
-            b = Integer.parseInt(getValue(cInst[2]));
-        } catch (Exception e) {
-            if ("+".equals(cInst[0])) {
-                pushIntoToken((getValue(cInst[1]) + getValue(cInst[2])), cInst[3]);
-                return;
-            }
+        load(args[0], va);
+        load(args[1], vb);
+        boolean numeric = va.isNumeric() && vb.isNumeric();
+        if (!numeric && cInst.op == Op.ADD) {
+            pushIntoToken(va.asString() + vb.asString(), args[2]);
+            return;
         }
-        switch (cInst[0].charAt(0)) {
-            case '+':
-                result = (a + b) + "";
+        int a = va.isNumeric() ? va.asInt() : 0;
+        int b = numeric ? vb.asInt() : 0;
+        switch (cInst.op) {
+            case ADD:
+                result = a + b;
                 break;
-            case '-':
-                result = (a - b) + "";
+            case SUB:
+                result = a - b;
                 break;
-            case '*':
-                result = (a * b) + "";
+            case MUL:
+                result = a * b;
                 break;
-            case ':':
-                result = (a / b) + "";
+            case DIV:
+                result = a / b;
                 break;
-            case '%':
-                result = (a % b) + "";
+            case MOD:
+                result = a % b;
                 break;
             default:
                 doException("Error when we do arithmetic calculating");
         }
-        pushIntoToken(result, cInst[3]);
+        pushIntoToken(result, args[2]);
+    }
+
+    private int randomInt(int lo, int hi) {
+        if (lo >= hi) {
+            doException("Empty random range " + lo + " to " + hi);
+        }
+        return random.nextInt(lo, hi);
     }
 
-    private void addRandom(){
-        Random r = new Random();
-        pushIntoToken(r.nextBoolean()?1+"":0+"", cInst[1]);
+    private void fillRandom(IntDeque stack) {
+        Operand[] args = cInst.args;
+        int count = intValue(args[0]), lo = intValue(args[1]), hi = intValue(args[2]);
+        if (count < 0) {
+            doException("Can't push " + count + " random values");
+        }
+        if (lo >= hi) {
+            doException("Empty random range " + lo + " to " + hi);
+        }
+        if (randoms == null) {
+            randoms = new int[RANDOM_CHUNK];
+        }
+        for (int done = 0; done < count; ) {
+            int n = Math.min(count - done, randoms.length);
+            for (int i = 0; i < n; i++) {
+                randoms[i] = random.nextInt(lo, hi);
+            }
+            stack.addAll(randoms, 0, n);
+            done += n;
+        }
     }
 
     private void doTrigonometric() {
         int value = Integer.MIN_VALUE;
         boolean two = false;
-        switch (cInst[0]) {
-            case "sin":
-                value = (int) Math.sin(Double.parseDouble(getValue(cInst[1])));
+        Operand[] args = cInst.args;
+        switch (cInst.op) {
+            case SIN:
+                value = (int) Math.sin(doubleValue(args[0]));
                 break;
-            case "cos":
-                value = (int) Math.cos(Double.parseDouble(getValue(cInst[1])));
+            case COS:
+                value = (int) Math.cos(doubleValue(args[0]));
                 break;
-            case "tan":
-                value = (int) Math.tan(Double.parseDouble(getValue(cInst[1])));
+            case TAN:
+                value = (int) Math.tan(doubleValue(args[0]));
                 break;
-            case "atan":
-                value = (int) Math.atan(Double.parseDouble(getValue(cInst[1])));
+            case ATAN:
+                value = (int) Math.atan(doubleValue(args[0]));
                 break;
-            case "atan2":
-                value = (int) Math.atan2(Double.parseDouble(getValue(cInst[1])), Double.parseDouble(getValue(cInst[2])));
+            case ATAN2:
+                value = (int) Math.atan2(doubleValue(args[0]), doubleValue(args[1]));
                 two = true;
                 break;
-            case "pow":
-                value = (int) Math.pow(Double.parseDouble(getValue(cInst[1])), Double.parseDouble(getValue(cInst[2])));
+            case POW:
+                value = (int) Math.pow(doubleValue(args[0]), doubleValue(args[1]));
                 two = true;
                 break;
-            case "sqrt":
-                value = (int) Math.sqrt(Double.parseDouble(getValue(cInst[1])));
+            case SQRT:
+                value = (int) Math.sqrt(doubleValue(args[0]));
                 break;
             default:
                 doException("Wrong syntax at doing trigonometric");
         }
         if (two) {
-            pushIntoToken(value + "", cInst[3]);
+            pushIntoToken(value, args[2]);
         } else {
-            pushIntoToken(value + "", cInst[2]);
+            pushIntoToken(value, args[1]);
         }
     }
 
     private void bitOperation() {
-        int a = Integer.parseInt(getValue(cInst[1]));
-        int b = Integer.parseInt(getValue(cInst[2]));
-        String result = "";
-        switch (cInst[0].charAt(0)) {
-            case '^': {
-                result = (a ^ b) + "";
+        int a = intValue(cInst.args[0]);
+        int b = intValue(cInst.args[1]);
+        int result = 0;
+        switch (cInst.op) {
+            case XOR: {
+                result = a ^ b;
                 break;
             }
-            case '>': {
-                result = (a >> b) + "";
+            case SHR: {
+                result = a >> b;
                 break;
             }
-            case '<': {
-                result = (a << b) + "";
+            case SHL: {
+                result = a << b;
                 break;
             }
-            case '|': {
-                result = (a | b) + "";
+            case OR: {
+                result = a | b;
                 break;
             }
-            case '&': {
-                result = (a & b) + "";
+            case AND: {
+                result = a & b;
                 break;
             }
             default:
-                doException("Something wrong with bit operation, maybe your code is wrong, current token? " + cInst[0].charAt(0));
+                doException("Something wrong with bit operation, maybe your code is wrong, current token? " + cInst.op.token);
         }
-        pushIntoToken(result, cInst[3]);
+        pushIntoToken(result, cInst.args[2]);
     }
 
     private void convertBinaryToDecimal() {
-        String[] a = getValue(cInst[1]).split("");
+        String[] a = getValue(cInst.args[0]).split("");
         int sum = 0;
         for (int i = a.length - 1, j = 0; i >= 0; i--, j++) {
             sum += Integer.parseInt(a[j]) * (1 << i);
         }
-        pushIntoToken(sum + "", cInst[2]);
+        pushIntoToken(sum, cInst.args[1]);
     }
 
     private void convertDecimalToBinary() {
         StringBuilder result = new StringBuilder();
+        int value = intValue(cInst.args[0]);
         for (int i = 31; i >= 0; i--) {
-            int k = Integer.parseInt(getValue(cInst[1])) >> i;
+            int k = value >> i;
             if ((k & 1) > 0)
                 result.append("1");
             else
                 result.append("0");
         }
-        pushIntoToken(result.toString(), cInst[2]);
+        pushIntoToken(result.toString(), cInst.args[1]);
     }
 
     private int pop(char token) {
@@ -632,69 +1037,128 @@ public class Compiler {
                 default:
                     doException("Error when we pop, or peek from the int stacks, maybe wrong symbol");
             }
-        } catch (NullPointerException e) {
+        } catch (NoSuchElementException e) {
             doException("Null pointer exception, because maybe a queue is empty, the error is at getting value from queue");
         }
         return Integer.MIN_VALUE;
     }
 
-    private String getValue(String instruction) {
-        switch (instruction.charAt(0)) {
-            case ',':
-            case '.':
-                return stringPop(instruction);
-            case '\\':
-            case '/':
-            case '(':
-            case ')':
-                return pop(instruction.charAt(0)) + "";
-            case '@': {
-                switch (instruction.charAt(1)) {
-                    case ',':
-                    case '.':
-                        return stringPop(instruction);
-                    case '\\':
-                    case '/':
-                    case '(':
-                    case ')':
-                        return pop(instruction.charAt(1)) + "";
-                    case '@':
-                        return names.get(getValue(instruction.substring(1)));
-                    default:
-                        return names.get(instruction.substring(1));
+    private String getValue(Operand operand) {
+        switch (operand.kind) {
+            case POLL_STRING:
+                return stringPool.poll();
+            case PEEK_STRING:
+                return stringPool.peek();
+            case POLL_LEFT:
+                return pop('\\') + "";
+            case POLL_RIGHT:
+                return pop('/') + "";
+            case PEEK_LEFT:
+                return pop('(') + "";
+            case PEEK_RIGHT:
+                return pop(')') + "";
+            case ALIAS:
+                return names.getString(operand.slot);
+            case INDIRECT:
+                return names.getString(names.find(getValue(operand.inner)));
+            default:
+                return operand.text;
+        }
+    }
+
+    private int intValue(Operand operand) {
+        switch (operand.kind) {
+            case LITERAL:
+                return operand.isInt ? operand.num : Integer.parseInt(operand.text);
+            case ALIAS:
+                return names.getInt(operand.slot);
+            case INDIRECT:
+                return names.getInt(names.find(getValue(operand.inner)));
+            case POLL_LEFT:
+                return pop('\\');
+            case POLL_RIGHT:
+                return pop('/');
+            case PEEK_LEFT:
+                return pop('(');
+            case PEEK_RIGHT:
+                return pop(')');
+            default:
+                return Integer.parseInt(getValue(operand));
+        }
+    }
+
+    private double doubleValue(Operand operand) {
+        load(operand, va);
+        return va.asDouble();
+    }
+
+    private void load(Operand operand, Value value) {
+        switch (operand.kind) {
+            case LITERAL:
+                if (operand.isInt) {
+                    value.set(operand.num);
+                } else {
+                    value.set(operand.text);
                 }
-            }
+                break;
+            case ALIAS:
+                names.load(operand.slot, value);
+                break;
+            case INDIRECT:
+                names.load(names.find(getValue(operand.inner)), value);
+                break;
+            case POLL_LEFT:
+            case POLL_RIGHT:
+            case PEEK_LEFT:
+            case PEEK_RIGHT:
+                value.set(intValue(operand));
+                break;
             default:
-                return instruction;
+                value.set(getValue(operand));
         }
     }
 
-    private String stringPop(String instruction) {
-        switch (instruction.charAt(0)) {
-            case ',':
-                return stringPool.poll();
-            case '.':
-                return stringPool.peek();
+    private void pushIntoToken(Value val, Operand to) {
+        if (val.isInt) {
+            pushIntoToken(val.num, to);
+        } else {
+            pushIntoToken(val.str, to);
+        }
+    }
+
+    private void pushIntoToken(int val, Operand to) {
+        switch (to.kind) {
+            case TO_RIGHT:
+                right.add(val);
+                break;
+            case TO_LEFT:
+                left.add(val);
+                break;
+            case TO_STRING:
+                stringPool.add(Integer.toString(val));
+                break;
+            case TO_ALIAS:
+                names.setInt(to.slot, val);
+                break;
             default:
-                doException("Error when we pop, or peel a string from the string pool, maybe wrong symbol");
+                doException("You are using wrong token for do arithmetic operation");
         }
-        return null;
     }
 
-    private void pushIntoToken(String val, String to) {
+    private void pushIntoToken(String val, Operand to) {
 
-        switch (to.charAt(0)) {
-            case ']':
+        switch (to.kind) {
+            case TO_RIGHT:
                 right.add(Integer.parseInt(val));
                 break;
-            case '[':
+            case TO_LEFT:
                 left.add(Integer.parseInt(val));
                 break;
-            case '\'':
+            case TO_STRING:
                 stringPool.add(val);
                 break;
-            case '#': {
-                names.put(to.substring(1), val);
+            case TO_ALIAS: {
+                names.setString(to.slot, val);
                 break;
             }
             default:
@@ -703,22 +1167,64 @@ public class Compiler {
     }
 
     private void doException(String msg) {
-        try {
-            throw new Exception(msg);
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("Error at " + ip + ". -> " + codes[ip]);
-            System.exit(1);
-        }
+        int at = Math.min(ip, program.length - 1);
+        throw new SymplException(SymplException.Reason.ERROR, msg, at, sourceLine(at), executed, new Exception(msg));
     }
 
-    private void printToConsole(String msg) {
-        if (stringFormatter) {
-            msg = msg.replaceAll("§", "\n");
-        }
-        if (preWord) {
-            msg = "Output: " + msg;
+    int fuel() {
+        return window == null ? Jit.FUEL : CHECK_INTERVAL;
+    }
+
+    long limit() {
+        return limit;
+    }
+
+    boolean counting() {
+        return headless || metrics != null || budget != Long.MAX_VALUE || deadline != 0;
+    }
+
+    Screen window() {
+        return window;
+    }
+
+    IntDeque left() {
+        return left;
+    }
+
+    IntDeque right() {
+        return right;
+    }
+
+    Queue<String> stringPool() {
+        return stringPool;
+    }
+
+    long seed() {
+        Long current = seed;
+        return current == null ? 0 : current;
+    }
+
+    private void publishMetrics() {
+        int aliases = 0;
+        for (int slot = 0; slot < names.size(); slot++) {
+            if (names.kinds[slot] != Aliases.UNSET && !labelSlots.get(slot)) {
+                aliases++;
+            }
         }
-        System.out.println(msg);
+        metrics.publish(executed, left.size(), right.size(), stringPool.size(), aliases);
+    }
+
+    private void printHeadlessReport() {
+        HeadlessDisplay display = (HeadlessDisplay) window;
+        System.err.printf("Headless: frames=%d instructions=%d wall=%.3fs checksum=%08x%n", display.frames(), executed,
+                (System.nanoTime() - started) / 1e9, display.checksum());
+    }
+
+    private Output beginOutput() {
+        return preWord ? out.print("Output: ") : out;
+    }
+
+    private void endOutput() {
+        out.print(ColorConst.RESET_COLOR).newline().newline();
     }
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+public class Decoder {
+
+    static final int VERSION = 1;
+    private static final Operand[] NO_ARGS = new Operand[0];
+
+    public static Program decode(Source codes) {
+        Instruction[] program = new Instruction[codes.lines()];
+        LinkedHashMap<String, Integer> labels = new LinkedHashMap<>();
+        for (int i = 0; i < program.length; i++) {
+            program[i] = decodeLine(codes.tokens(i), i);
+            if (program[i].op == Op.LABEL) {
+                labels.put(program[i].label, i);
+            }
+        }
+        for (Instruction ins : program) {
+            if (ins.op == Op.BRANCH) {
+                ins.target = labels.getOrDefault(ins.label, -1);
+            } else if (ins.op == Op.GOTO) {
+                Integer label = labels.get(ins.label);
+                ins.target = label == null ? -1 : label + 1;
+            }
+        }
+        return new Program(program, resolveAliases(program), labels);
+    }
+
+    private static ArrayList<String> resolveAliases(Instruction[] program) {
+        ArrayList<String> names = new ArrayList<>();
+        HashMap<String, Integer> slots = new HashMap<>();
+        for (Instruction ins : program) {
+            if (ins.op == Op.LABEL) {
+                slots.computeIfAbsent(ins.label, name -> addName(names, name));
+            }
+            for (Operand arg : ins.args) {
+                for (Operand o = arg; o != null; o = o.inner) {
+                    if (o.kind == Operand.Kind.ALIAS || o.kind == Operand.Kind.TO_ALIAS) {
+                        o.slot = slots.computeIfAbsent(o.text, name -> addName(names, name));
+                    }
+                }
+            }
+        }
+        return names;
+    }
+
+    private static int addName(ArrayList<String> names, String name) {
+        names.add(name);
+        return names.size() - 1;
+    }
+
+    private static Instruction decodeLine(String[] cInst, int line) {
+        String token = cInst.length == 0 ? "" : cInst[0];
+        Op op = Op.of(token);
+        if (op == Op.UNKNOWN) {
+            return unknown(token, "keyword is not implemented: " + token, line);
+        }
+        if (cInst.length - 1 < op.arity) {
+            return unknown(token, "Maybe your syntax is wrong, missing operand for: " + token, line);
+        }
+        switch (op) {
+            case LABEL:
+            case GOTO:
+                return new Instruction(op, NO_ARGS, line, token.substring(1), null);
+            case PUSH_LEFT_MANY:
+            case PUSH_RIGHT_MANY: {
+                Operand[] args = new Operand[cInst.length - 1];
+                for (int i = 1; i < cInst.length; i++) {
+                    args[i - 1] = Operand.source(cInst[i]);
+                }
+                return new Instruction(op, args, line, null, null);
+            }
+            case PUSH_STRING:
+                return new Instruction(op, new Operand[]{new Operand(Operand.Kind.LITERAL, cInst[1], null)}, line, null, null);
+            case BRANCH:
+                return new Instruction(op, new Operand[]{
+                        new Operand(Operand.Kind.LITERAL, cInst[1], null),
+                        Operand.source(cInst[2]),
+                        Operand.source(cInst[3])}, line, cInst[4], null);
+            case ALIAS:
+                return new Instruction(op, new Operand[]{Operand.source(cInst[1]), Operand.name(cInst[2])}, line, null, null);
+            case DELETE:
+                return new Instruction(op, new Operand[]{Operand.name(cInst[1])}, line, null, null);
+            default: {
+                Operand[] args = new Operand[op.arity];
+                for (int i = 0; i < op.arity; i++) {
+                    args[i] = hasTarget(op) && i == op.arity - 1 ? Operand.target(cInst[i + 1]) : Operand.source(cInst[i + 1]);
+                }
+                return new Instruction(op, args, line, null, null);
+            }
+        }
+    }
+
+    private static boolean hasTarget(Op op) {
+        switch (op) {
+            case ADD:
+            case CONCAT:
+            case SUB:
+            case MUL:
+            case DIV:
+            case MOD:
+            case SIN:
+            case COS:
+            case TAN:
+            case ATAN:
+            case ATAN2:
+            case POW:
+            case SQRT:
+            case XOR:
+            case SHR:
+            case SHL:
+            case OR:
+            case AND:
+            case GET_COLOR:
+            case BIN_TO_DEC:
+            case DEC_TO_BIN:
+            case RAND:
+            case RAND_INT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Instruction unknown(String token, String message, int line) {
+        return new Instruction(Op.UNKNOWN, NO_ARGS, line, token, message);
+    }
+}
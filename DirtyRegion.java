@@ -0,0 +1,67 @@
+import java.awt.Rectangle;
+
+public final class DirtyRegion {
+
+    private final int limit;
+    private final int[] boxes;
+    private int count;
+
+    public DirtyRegion(int limit) {
+        this.limit = Math.max(1, limit);
+        this.boxes = new int[(this.limit + 1) * 4];
+    }
+
+    public void add(int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        int x1 = x + width, y1 = y + height;
+        if (count > 0) {
+            int last = (count - 1) * 4;
+            int lx0 = boxes[last], ly0 = boxes[last + 1], lx1 = boxes[last + 2], ly1 = boxes[last + 3];
+            if (x >= lx0 && y >= ly0 && x1 <= lx1 && y1 <= ly1) {
+                return;
+            }
+            if (y == ly0 && y1 == ly1 && x <= lx1 && x1 >= lx0) {
+                boxes[last] = Math.min(x, lx0);
+                boxes[last + 2] = Math.max(x1, lx1);
+                return;
+            }
+        }
+        int at = count++ * 4;
+        boxes[at] = x;
+        boxes[at + 1] = y;
+        boxes[at + 2] = x1;
+        boxes[at + 3] = y1;
+        if (count > limit) {
+            int bx0 = x, by0 = y, bx1 = x1, by1 = y1;
+            for (int i = 0; i < at; i += 4) {
+                bx0 = Math.min(bx0, boxes[i]);
+                by0 = Math.min(by0, boxes[i + 1]);
+                bx1 = Math.max(bx1, boxes[i + 2]);
+                by1 = Math.max(by1, boxes[i + 3]);
+            }
+            boxes[0] = bx0;
+            boxes[1] = by0;
+            boxes[2] = bx1;
+            boxes[3] = by1;
+            count = 1;
+        }
+    }
+
+    public void addAll(Rectangle[] rects) {
+        for (Rectangle r : rects) {
+            add(r.x, r.y, r.width, r.height);
+        }
+    }
+
+    public Rectangle[] take() {
+        Rectangle[] taken = new Rectangle[count];
+        for (int i = 0; i < count; i++) {
+            int at = i * 4;
+            taken[i] = new Rectangle(boxes[at], boxes[at + 1], boxes[at + 2] - boxes[at], boxes[at + 3] - boxes[at + 1]);
+        }
+        count = 0;
+        return taken;
+    }
+}
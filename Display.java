@@ -1,72 +1,169 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.image.BufferStrategy;
-import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
-public class Display extends JFrame implements Runnable {
+public class Display extends JFrame implements Screen {
 
 	private static final long serialVersionUID = 1L;
-	private double fpsCap = 60d;
+	private static final int MAX_CATCH_UP = 5;
+    private static final int BUFFERS = 3;
+	private volatile double fpsCap = 60d;
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private final ArrayDeque<Rectangle[]> presented = new ArrayDeque<>();
+    private volatile int fullFrames = BUFFERS;
     private long nextStartTime;
     private int fps, ups;
-    private final BufferedImage img;
+    private final Framebuffer frame;
+    private final FrameStats stats = new FrameStats();
+    private Framebuffer.Frame front;
+    private volatile Thread presenter;
+    private volatile boolean publishWanted;
+    private boolean rendered;
     private final int width, height;
+    private final int columns, rows;
     private final String title;
     private final Canvas canvas;
     private boolean showFpsUps;
+    private final boolean vsync, customLoop;
 
     public Display(int width, int height, String title){
+        this(width, height, title, width, height, false, false, false);
+    }
+
+    public Display(int width, int height, String title, int columns, int rows, boolean fullscreen, boolean vsync, boolean customLoop){
         this.width = width;
         this.height = height;
         this.title = title;
-        if(Compiler.fullscreen){
+        this.vsync = vsync;
+        this.customLoop = customLoop;
+        if(fullscreen){
             setExtendedState(JFrame.MAXIMIZED_BOTH);
         }
         setPreferredSize(new Dimension(width, height));
         setResizable(true);
-        setDefaultCloseOperation(EXIT_ON_CLOSE);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
         canvas = new Canvas();
         canvas.setPreferredSize(new Dimension(width, height));
+        canvas.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                fullFrames = BUFFERS;
+            }
+        });
         add(canvas);
         pack();
-        img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        frame = new Framebuffer(columns, rows);
+        this.columns = columns;
+        this.rows = rows;
+        front = frame.initialFront();
         setVisible(true);
     }
 
     private void loop() {
-        double acc = 0;
-        long currentT, lastU = System.currentTimeMillis();
-        nextStartTime = System.currentTimeMillis() + 1000;
-        if(!Compiler.customLoop) {
-            while (true) {
-                currentT = System.currentTimeMillis();
-                double lastRenderTS = (currentT - lastU) / 1000d;
-                acc += lastRenderTS;
-                lastU = currentT;
-                double updateRate = 1.0d / fpsCap;
-                if (acc >= updateRate) {
-                    while (acc > updateRate) {
-                        _update();
-                        acc -= updateRate;
-                    }
-                    render();
+        presenter = Thread.currentThread();
+        if (customLoop) {
+            while (closed.getCount() > 0) {
+                present();
+                LockSupport.park(this);
+            }
+            return;
+        }
+        long refresh = refreshNanos();
+        long acc = 0;
+        long last = System.nanoTime();
+        nextStartTime = last + TimeUnit.SECONDS.toNanos(1);
+        while (closed.getCount() > 0) {
+            long step = vsync && refresh > 0 ? refresh : fpsCap > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / fpsCap) : 0;
+            if (step <= 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(16));
+                last = System.nanoTime();
+                continue;
+            }
+            long now = System.nanoTime();
+            acc += now - last;
+            last = now;
+            if (acc >= step) {
+                if (acc >= 2 * step) {
+                    stats.lateFrame();
                 }
-                printStats();
+                for (int updates = 0; acc >= step && updates < MAX_CATCH_UP; updates++) {
+                    _update();
+                    acc -= step;
+                }
+                acc %= step;
+                publishWanted = true;
+                present();
             }
+            printStats();
+            LockSupport.parkNanos(step - acc);
         }
-        noLoop();
+    }
+
+    private long refreshNanos() {
+        int rate = getGraphicsConfiguration().getDevice().getDisplayMode().getRefreshRate();
+        return rate == DisplayMode.REFRESH_RATE_UNKNOWN ? 0 : TimeUnit.SECONDS.toNanos(1) / rate;
     }
 
     public void render(){
+        rendered = true;
+        frame.publish();
+        stats.update(System.nanoTime());
+        Thread thread = presenter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void present(){
         BufferStrategy bs = canvas.getBufferStrategy();
         if(bs == null) {
-            canvas.createBufferStrategy(3);
+            canvas.createBufferStrategy(BUFFERS);
+            fullFrames = BUFFERS;
             return;
         }
-        Graphics g = bs.getDrawGraphics();
-        g.drawImage(img, 0, 0, null);
+        long shown = front.serial;
+        front = frame.acquire(front);
+        stats.dropped(front.serial - shown - 1);
+        Rectangle[] changed = frame.takePublished();
+        Graphics2D g = (Graphics2D) bs.getDrawGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        if (fullFrames > 0) {
+            fullFrames--;
+            g.drawImage(front.img, 0, 0, width, height, null);
+        } else {
+            blit(g, changed);
+            for (Rectangle[] older : presented) {
+                blit(g, older);
+            }
+        }
+        g.dispose();
+        presented.addFirst(changed);
+        if (presented.size() >= BUFFERS) {
+            presented.removeLast();
+        }
         bs.show();
+        if (bs.contentsLost() || bs.contentsRestored()) {
+            fullFrames = BUFFERS;
+        }
+        if (vsync) {
+            Toolkit.getDefaultToolkit().sync();
+        }
         fps++;
+        stats.frame(System.nanoTime());
+    }
+
+    private void blit(Graphics g, Rectangle[] rects) {
+        for (Rectangle r : rects) {
+            int x0 = r.x * width / columns, y0 = r.y * height / rows;
+            int x1 = (r.x + r.width) * width / columns, y1 = (r.y + r.height) * height / rows;
+            g.drawImage(front.img, x0, y0, x1, y1, r.x, r.y, r.x + r.width, r.y + r.height, null);
+        }
     }
 
     private void _update(){
@@ -78,10 +175,14 @@ public class Display extends JFrame implements Runnable {
     }
 
     public void addRect(int x, int y, int width, int height, int rgb){
-        for (int i = y; i < y + height; i++) {
-            for (int j = x; j < x + width; j++) {
-                img.setRGB(j, i, rgb);
-            }
+        frame.addRect(x, y, width, height, rgb);
+        publishIfWanted();
+    }
+
+    private void publishIfWanted() {
+        if (publishWanted && !rendered) {
+            publishWanted = false;
+            frame.publish();
         }
     }
 
@@ -90,15 +191,24 @@ public class Display extends JFrame implements Runnable {
     }
 
     public void noLoop() {
+        render();
         try {
-            while (true) {
-                Thread.sleep(1000);
-            }
-        }catch (Exception e){
+            closed.await();
+        } catch (InterruptedException e) {
             e.printStackTrace();
         }
     }
 
+    public boolean isClosed() {
+        return closed.getCount() == 0;
+    }
+
+    @Override
+    public void dispose() {
+        closed.countDown();
+        super.dispose();
+    }
+
     @Override
     public void run() {
         loop();
@@ -109,22 +219,37 @@ public class Display extends JFrame implements Runnable {
     }
 
     private void printStats() {
-        if (System.currentTimeMillis() > nextStartTime) {
+        long now = System.nanoTime();
+        if (now - nextStartTime > 0) {
             if (showFpsUps) {
                 System.out.printf("FPS: %d, UPS: %d%n", fps, ups);
             }
             fps = 0;
             ups = 0;
-            nextStartTime = System.currentTimeMillis() + 1000;
+            nextStartTime = now + TimeUnit.SECONDS.toNanos(1);
         }
     }
 
     public int getColor(int x, int y){
-        return img.getRGB(x, y);
+        return frame.getColor(x, y);
     }
 
     public void setColor(int x, int y, int color){
-        img.setRGB(x, y, color);
+        frame.setColor(x, y, color);
+        publishIfWanted();
+    }
+
+    public void setBlock(int x, int y, int width, int height, int[] colors){
+        frame.setBlock(x, y, width, height, colors);
+        publishIfWanted();
+    }
+
+    public int[] getBlock(int x, int y, int width, int height){
+        return frame.getBlock(x, y, width, height);
+    }
+
+    public FrameStats stats() {
+        return stats;
     }
 
 }
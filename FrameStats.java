@@ -0,0 +1,52 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class FrameStats {
+
+    public final Histogram frameTime = new Histogram();
+    public final Histogram updateTime = new Histogram();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong late = new AtomicLong();
+    private long lastFrame, lastUpdate;
+
+    public void frame(long now) {
+        if (frames.getAndIncrement() > 0) {
+            frameTime.record(now - lastFrame);
+        }
+        lastFrame = now;
+    }
+
+    public void update(long now) {
+        if (updates.getAndIncrement() > 0) {
+            updateTime.record(now - lastUpdate);
+        }
+        lastUpdate = now;
+    }
+
+    public void dropped(long count) {
+        if (count > 0) {
+            dropped.addAndGet(count);
+        }
+    }
+
+    public void lateFrame() {
+        late.incrementAndGet();
+    }
+
+    public long frames() {
+        return frames.get();
+    }
+
+    public long updates() {
+        return updates.get();
+    }
+
+    public long dropped() {
+        return dropped.get();
+    }
+
+    public long late() {
+        return late.get();
+    }
+}
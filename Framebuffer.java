@@ -0,0 +1,243 @@
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+public final class Framebuffer {
+
+    public static final class Frame {
+        public final BufferedImage img;
+        final int[] pixels;
+        volatile long serial;
+
+        Frame(int width, int height) {
+            img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+        }
+    }
+
+    private static final int HISTORY = 4;
+    private static final int STRIDE = 5;
+    private static final int COMMANDS = Integer.getInteger("sympl.drawCommands", 4096);
+    private static final int PARALLEL_AREA = 1 << 16;
+    private static final int MIN_BAND = 16;
+
+    private final DirtyRegion dirty = new DirtyRegion(Integer.getInteger("sympl.dirtyRects", 32));
+    private final DirtyRegion published = new DirtyRegion(Integer.getInteger("sympl.dirtyRects", 32));
+    private final AtomicReference<Frame> ready;
+    private final ArrayDeque<Rectangle[]> history = new ArrayDeque<>();
+    private final int width, height;
+    private Frame back;
+    private int[] pixels;
+    private long serial;
+    private final int[] commands = new int[COMMANDS * STRIDE];
+    private int count;
+    private long area;
+
+    public Framebuffer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        back = new Frame(width, height);
+        pixels = back.pixels;
+        ready = new AtomicReference<>(new Frame(width, height));
+    }
+
+    public Frame initialFront() {
+        return new Frame(width, height);
+    }
+
+    public void publish() {
+        flush();
+        Rectangle[] changed = dirty.take();
+        Frame done = back;
+        done.serial = ++serial;
+        history.addFirst(changed);
+        if (history.size() > HISTORY) {
+            history.removeLast();
+        }
+        back = ready.getAndSet(done);
+        catchUp(done);
+        pixels = back.pixels;
+        synchronized (published) {
+            published.addAll(changed);
+        }
+    }
+
+    public Rectangle[] takePublished() {
+        synchronized (published) {
+            return published.take();
+        }
+    }
+
+    public Frame acquire(Frame front) {
+        if (ready.get().serial <= front.serial) {
+            return front;
+        }
+        return ready.getAndSet(front);
+    }
+
+    private void catchUp(Frame from) {
+        long behind = serial - back.serial;
+        if (behind > history.size()) {
+            System.arraycopy(from.pixels, 0, back.pixels, 0, back.pixels.length);
+        } else {
+            int i = 0;
+            for (Rectangle[] rects : history) {
+                if (i++ >= behind) {
+                    break;
+                }
+                for (Rectangle r : rects) {
+                    for (int row = r.y * width; row < (r.y + r.height) * width; row += width) {
+                        System.arraycopy(from.pixels, row + r.x, back.pixels, row + r.x, r.width);
+                    }
+                }
+            }
+        }
+        back.serial = serial;
+    }
+
+    public void addRect(int x, int y, int width, int height, int rgb){
+        int x0 = Math.max(x, 0), y0 = Math.max(y, 0);
+        int x1 = (int) Math.min((long) x + width, this.width);
+        int y1 = (int) Math.min((long) y + height, this.height);
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+        record(x0, y0, x1, y1, rgb & 0xFFFFFF);
+        dirty.add(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    public int getColor(int x, int y){
+        int index = index(x, y);
+        flush();
+        return pixels[index] | 0xFF000000;
+    }
+
+    public void setColor(int x, int y, int color){
+        index(x, y);
+        record(x, y, x + 1, y + 1, color & 0xFFFFFF);
+        dirty.add(x, y, 1, 1);
+    }
+
+    public void setBlock(int x, int y, int width, int height, int[] colors) {
+        int x0 = Math.max(x, 0), y0 = Math.max(y, 0);
+        int x1 = (int) Math.min((long) x + width, this.width);
+        int y1 = (int) Math.min((long) y + height, this.height);
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+        flush();
+        int span = x1 - x0;
+        for (int row = y0; row < y1; row++) {
+            int to = row * this.width + x0;
+            System.arraycopy(colors, (row - y) * width + (x0 - x), pixels, to, span);
+            for (int i = to; i < to + span; i++) {
+                pixels[i] &= 0xFFFFFF;
+            }
+        }
+        dirty.add(x0, y0, span, y1 - y0);
+    }
+
+    public int[] getBlock(int x, int y, int width, int height) {
+        if (width < 0 || height < 0 || x < 0 || y < 0 || (long) x + width > this.width || (long) y + height > this.height) {
+            throw new ArrayIndexOutOfBoundsException("Coordinate out of bounds!");
+        }
+        flush();
+        int[] colors = new int[width * height];
+        for (int row = 0; row < height; row++) {
+            int from = (y + row) * this.width + x;
+            System.arraycopy(pixels, from, colors, row * width, width);
+        }
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] |= 0xFF000000;
+        }
+        return colors;
+    }
+
+    private void record(int x0, int y0, int x1, int y1, int rgb) {
+        if (count == COMMANDS) {
+            flush();
+        }
+        int at = count++ * STRIDE;
+        commands[at] = x0;
+        commands[at + 1] = y0;
+        commands[at + 2] = x1;
+        commands[at + 3] = y1;
+        commands[at + 4] = rgb;
+        area += (long) (x1 - x0) * (y1 - y0);
+    }
+
+    public void flush() {
+        if (count == 0) {
+            return;
+        }
+        int bands = Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, height / MIN_BAND);
+        if (area < PARALLEL_AREA || bands < 2) {
+            rasterize(0, height);
+        } else {
+            ForkJoinPool.commonPool().invoke(new Bands(0, bands, bands));
+        }
+        count = 0;
+        area = 0;
+    }
+
+    private void rasterize(int top, int bottom) {
+        int[] commands = this.commands;
+        int[] pixels = this.pixels;
+        for (int at = 0, end = count * STRIDE; at < end; at += STRIDE) {
+            int y0 = Math.max(commands[at + 1], top);
+            int y1 = Math.min(commands[at + 3], bottom);
+            int x0 = commands[at], x1 = commands[at + 2], rgb = commands[at + 4];
+            for (int row = y0 * width; row < y1 * width; row += width) {
+                if (x1 - x0 == 1) {
+                    pixels[row + x0] = rgb;
+                } else {
+                    Arrays.fill(pixels, row + x0, row + x1, rgb);
+                }
+            }
+        }
+    }
+
+    private final class Bands extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from, to, bands;
+
+        Bands(int from, int to, int bands) {
+            this.from = from;
+            this.to = to;
+            this.bands = bands;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                rasterize((int) ((long) height * from / bands), (int) ((long) height * to / bands));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Bands(from, mid, bands), new Bands(mid, to, bands));
+        }
+    }
+
+    public long checksum() {
+        flush();
+        ByteBuffer bytes = ByteBuffer.allocate(pixels.length * 4);
+        bytes.asIntBuffer().put(pixels);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    private int index(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            throw new ArrayIndexOutOfBoundsException("Coordinate out of bounds!");
+        }
+        return y * width + x;
+    }
+}
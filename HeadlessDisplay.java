@@ -0,0 +1,83 @@
+public class HeadlessDisplay implements Screen {
+
+    private final Framebuffer frame;
+    private final FrameStats stats = new FrameStats();
+    private int frames;
+
+    public HeadlessDisplay(int width, int height) {
+        frame = new Framebuffer(width, height);
+    }
+
+    @Override
+    public void run() {
+    }
+
+    @Override
+    public void render() {
+        frame.publish();
+        frame.takePublished();
+        frames++;
+        long now = System.nanoTime();
+        stats.update(now);
+        stats.frame(now);
+    }
+
+    @Override
+    public void update() {
+    }
+
+    @Override
+    public void noLoop() {
+    }
+
+    @Override
+    public void setFps(int fps) {
+    }
+
+    @Override
+    public void setShowFpsUps(boolean show) {
+    }
+
+    @Override
+    public void addRect(int x, int y, int width, int height, int rgb) {
+        frame.addRect(x, y, width, height, rgb);
+    }
+
+    @Override
+    public int getColor(int x, int y) {
+        return frame.getColor(x, y);
+    }
+
+    @Override
+    public void setColor(int x, int y, int color) {
+        frame.setColor(x, y, color);
+    }
+
+    @Override
+    public void setBlock(int x, int y, int width, int height, int[] colors) {
+        frame.setBlock(x, y, width, height, colors);
+    }
+
+    @Override
+    public int[] getBlock(int x, int y, int width, int height) {
+        return frame.getBlock(x, y, width, height);
+    }
+
+    @Override
+    public FrameStats stats() {
+        return stats;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return false;
+    }
+
+    public int frames() {
+        return frames;
+    }
+
+    public long checksum() {
+        return frame.checksum();
+    }
+}
@@ -0,0 +1,115 @@
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public final class Histogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+
+    public static final class Snapshot {
+        private final long count;
+        private final double mean, p50, p90, p99, max;
+
+        @ConstructorProperties({"count", "meanMillis", "p50Millis", "p90Millis", "p99Millis", "maxMillis"})
+        public Snapshot(long count, double mean, double p50, double p90, double p99, double max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMillis() {
+            return mean;
+        }
+
+        public double getP50Millis() {
+            return p50;
+        }
+
+        public double getP90Millis() {
+            return p90;
+        }
+
+        public double getP99Millis() {
+            return p99;
+        }
+
+        public double getMaxMillis() {
+            return max;
+        }
+    }
+
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        buckets.incrementAndGet(bucket(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[buckets.length()];
+        long n = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            n += counts[i];
+        }
+        return new Snapshot(n, n == 0 ? 0 : total.get() / 1e6 / count.get(),
+                percentile(counts, n, 0.50), percentile(counts, n, 0.90), percentile(counts, n, 0.99), max.get() / 1e6);
+    }
+
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    private double percentile(long[] counts, long n, double p) {
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(p * n), seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upper(i), max.get()) / 1e6;
+            }
+        }
+        return max.get() / 1e6;
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < SUB) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB - 1);
+        return (exponent - SUB_BITS + 1) * SUB + sub;
+    }
+
+    private static long upper(int bucket) {
+        if (bucket < SUB) {
+            return bucket;
+        }
+        int exponent = bucket / SUB + SUB_BITS - 1;
+        long sub = bucket % SUB;
+        return ((SUB + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+}
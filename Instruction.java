@@ -0,0 +1,68 @@
+public final class Instruction {
+
+    public final Op op;
+    public final Operand[] args;
+    public final int line;
+    public final String label;
+    public final String message;
+    public final Instruction[] parts;
+    public int target = -1;
+
+    public Instruction(Op op, Operand[] args, int line, String label, String message) {
+        this(op, args, line, label, message, null);
+    }
+
+    public Instruction(Op op, Operand[] args, int line, String label, String message, Instruction[] parts) {
+        this.op = op;
+        this.args = args;
+        this.line = line;
+        this.label = label;
+        this.message = message;
+        this.parts = parts;
+    }
+
+    public String token() {
+        switch (op) {
+            case LABEL:
+                return "{" + label;
+            case GOTO:
+                return "}" + label;
+            case UNKNOWN:
+                return label;
+            default:
+                return op.token;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        switch (op) {
+            case LABEL:
+                return "{" + label;
+            case GOTO:
+                return "}" + label + " -> " + target;
+            case UNKNOWN:
+                return "? " + message;
+            case NOP:
+                return op.token;
+            case INC_BRANCH:
+            case ARITH_RECT: {
+                sb.append(op.token).append(" [");
+                for (int i = 0; i < parts.length; i++) {
+                    sb.append(i == 0 ? "" : " ; ").append(parts[i]);
+                }
+                return sb.append(']').toString();
+            }
+            default:
+                sb.append(op.token);
+        }
+        for (Operand arg : args) {
+            sb.append(' ').append(op == Op.ALIAS && arg == args[1] || op == Op.DELETE ? arg.text : arg);
+        }
+        if (op == Op.BRANCH) {
+            sb.append(' ').append(label).append(" -> ").append(target);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,145 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+public final class IntDeque {
+
+    private int[] elements;
+    private int head;
+    private int size;
+
+    public IntDeque() {
+        this(16);
+    }
+
+    public IntDeque(int capacity) {
+        elements = new int[Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1];
+    }
+
+    public void add(int value) {
+        if (size == elements.length) {
+            grow(size + 1);
+        }
+        elements[(head + size) & (elements.length - 1)] = value;
+        size++;
+    }
+
+    public int poll() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        int value = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        return value;
+    }
+
+    public int peek() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return elements[head];
+    }
+
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return elements[(head + index) & (elements.length - 1)];
+    }
+
+    public void poll(int[] dst, int offset, int count) {
+        if (count > size) {
+            throw new NoSuchElementException();
+        }
+        int first = Math.min(count, elements.length - head);
+        System.arraycopy(elements, head, dst, offset, first);
+        System.arraycopy(elements, 0, dst, offset + first, count - first);
+        head = (head + count) & (elements.length - 1);
+        size -= count;
+    }
+
+    public void addAll(int[] src, int offset, int count) {
+        if (size + count > elements.length) {
+            grow(size + count);
+        }
+        int tail = (head + size) & (elements.length - 1);
+        int first = Math.min(count, elements.length - tail);
+        System.arraycopy(src, offset, elements, tail, first);
+        System.arraycopy(src, offset + first, elements, 0, count - first);
+        size += count;
+    }
+
+    public void addAll(IntDeque other) {
+        int count = other.size;
+        if (count == 0) {
+            return;
+        }
+        if (size + count > elements.length) {
+            grow(size + count);
+        }
+        int mask = elements.length - 1;
+        int copied = 0;
+        while (copied < count) {
+            int from = (other.head + copied) & (other.elements.length - 1);
+            int to = (head + size + copied) & mask;
+            int run = Math.min(count - copied, Math.min(other.elements.length - from, elements.length - to));
+            System.arraycopy(other.elements, from, elements, to, run);
+            copied += run;
+        }
+        size += count;
+    }
+
+    public void drainFrom(IntDeque other) {
+        if (size == 0) {
+            int[] swap = elements;
+            elements = other.elements;
+            head = other.head;
+            size = other.size;
+            other.elements = swap;
+            other.head = 0;
+            other.size = 0;
+            return;
+        }
+        addAll(other);
+        other.clear();
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = elements.length;
+        while (capacity < minCapacity) {
+            capacity <<= 1;
+        }
+        int[] grown = new int[capacity];
+        int first = Math.min(size, elements.length - head);
+        System.arraycopy(elements, head, grown, 0, first);
+        System.arraycopy(elements, 0, grown, first, size - first);
+        elements = grown;
+        head = 0;
+    }
+
+    public int[] toArray() {
+        int[] array = new int[size];
+        int first = Math.min(size, elements.length - head);
+        System.arraycopy(elements, head, array, 0, first);
+        System.arraycopy(elements, 0, array, first, size - first);
+        return array;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
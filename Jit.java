@@ -0,0 +1,395 @@
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public final class Jit {
+
+    public interface Code {
+        int run(Compiler c);
+    }
+
+    public static final int THRESHOLD = 2000;
+    public static final int FUEL = 1 << 16;
+    private static final int REJECTED = Integer.MIN_VALUE;
+    private static final String SPENT = "(--fuel < 0 || counting && c.executed >= limit)";
+    private static final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+    private static final AtomicInteger classes = new AtomicInteger();
+    private static final ExecutorService background = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "sympl-jit");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Instruction[] program;
+    private final AtomicReferenceArray<Code> compiled;
+    private final AtomicIntegerArray hotness;
+
+    public Jit(Instruction[] program) {
+        this.program = program;
+        this.compiled = new AtomicReferenceArray<>(program.length);
+        this.hotness = new AtomicIntegerArray(program.length);
+    }
+
+    public static boolean isAvailable() {
+        return javac != null;
+    }
+
+    static void awaitCompiles() {
+        try {
+            background.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Code backEdge(int from, int to) {
+        Code code = compiled.get(to);
+        if (code == null && hotness.get(to) >= 0 && hotness.incrementAndGet(to) == THRESHOLD) {
+            hotness.set(to, REJECTED);
+            background.submit(() -> compiled.set(to, compile(to, from)));
+        }
+        return code;
+    }
+
+    private Code compile(int header, int latch) {
+        for (int k = header; k <= latch; k++) {
+            if (!isSupported(program[k])) {
+                return null;
+            }
+        }
+        String name = "SymplLoop" + classes.incrementAndGet();
+        try {
+            byte[] bytes = JavaSource.compile(name, source(name, header, latch), "JIT");
+            if (bytes == null) {
+                return null;
+            }
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return (Code) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    private static boolean isSupported(Instruction ins) {
+        switch (ins.op) {
+            case WINDOW:
+            case WINDOW_GRID:
+            case WINDOW_BC:
+            case RENDER:
+            case UPDATE:
+            case WINDOW_SA2S:
+            case NO_LOOP:
+            case FPS:
+            case GET_COLOR:
+            case SET_COLOR:
+            case SET_BLOCK_LEFT:
+            case SET_BLOCK_RIGHT:
+            case GET_BLOCK_LEFT:
+            case GET_BLOCK_RIGHT:
+            case RECT:
+            case RECT_COLORED:
+            case ARITH_RECT:
+            case SLEEP:
+            case UNKNOWN:
+                return false;
+            default:
+        }
+        Instruction[] parts = ins.parts == null ? new Instruction[]{ins} : ins.parts;
+        for (Instruction part : parts) {
+            for (Operand arg : part.args) {
+                if (arg.kind == Operand.Kind.INDIRECT) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private String source(String name, int header, int latch) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("public final class ").append(name).append(" implements Jit.Code {\n");
+        sb.append("    public int run(Compiler c) {\n");
+        sb.append("        int ip = ").append(header).append(";\n");
+        emitRegion(sb, program, header, latch, true);
+        sb.append("    }\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    static void emitRegion(StringBuilder sb, Instruction[] program, int header, int latch, boolean fuel) {
+        sb.append("        Aliases v = c.aliases();\n");
+        sb.append("        int[] ints = v.ints;\n");
+        sb.append("        byte[] kinds = v.kinds;\n");
+        sb.append("        boolean counting = c.counting();\n");
+        if (fuel) {
+            sb.append("        int fuel = c.fuel();\n");
+            sb.append("        long limit = c.limit();\n");
+        }
+        sb.append("        while (true) {\n");
+        sb.append("            switch (ip) {\n");
+        Region region = new Region(header, latch, fuel);
+        for (int k = header; k <= latch; k++) {
+            sb.append("                case ").append(k).append(":\n");
+            sb.append("                    if (counting) c.executed++;\n");
+            emit(sb, program[k], k, region);
+        }
+        sb.append("                case ").append(latch + 1).append(":\n");
+        sb.append("                    return ").append(latch + 1).append(";\n");
+        sb.append("                default:\n");
+        sb.append("                    return ip;\n");
+        sb.append("            }\n");
+        sb.append("        }\n");
+    }
+
+    private static final class Region {
+        final int header, latch;
+        final boolean fuel;
+
+        Region(int header, int latch, boolean fuel) {
+            this.header = header;
+            this.latch = latch;
+            this.fuel = fuel;
+        }
+    }
+
+    private static void emit(StringBuilder sb, Instruction ins, int k, Region region) {
+        String indent = "                    ";
+        Operand[] args = ins.args;
+        switch (ins.op) {
+            case LABEL:
+            case NOP:
+                return;
+            case GOTO:
+                if (ins.target < 0) {
+                    generic(sb, k, region);
+                    return;
+                }
+                sb.append(indent).append(jump(ins.target, k, region)).append('\n');
+                return;
+            case BRANCH: {
+                String cmp = comparison(args[0].text);
+                if (ins.target < 0) {
+                    generic(sb, k, region);
+                } else if (cmp != null && isPure(args[1]) && isPure(args[2])) {
+                    sb.append(indent).append("if (").append(available(args[1], args[2])).append(") {\n");
+                    sb.append(indent).append("    if (").append(value(args[1])).append(cmp).append(value(args[2])).append(") ")
+                            .append(jump(ins.target, k, region)).append('\n');
+                    sb.append(indent).append("} else if (c.condition(").append(k).append(")) ")
+                            .append(jump(ins.target, k, region)).append('\n');
+                } else {
+                    sb.append(indent).append("if (c.condition(").append(k).append(")) ")
+                            .append(jump(ins.target, k, region)).append('\n');
+                }
+                return;
+            }
+            case INC_BRANCH: {
+                Instruction add = ins.parts[0], branch = ins.parts[1];
+                String cmp = comparison(branch.args[0].text);
+                int slot = add.args[0].slot;
+                Operand bound = branch.args[2];
+                if (cmp != null && isPure(bound) && branch.target >= 0) {
+                    String delta = (add.op == Op.ADD ? " + " : " - ") + value(add.args[1]);
+                    sb.append(indent).append("if (").append(available(add.args[0], bound)).append(") {\n");
+                    sb.append(indent).append("    int x = ints[").append(slot).append(']').append(delta).append(";\n");
+                    sb.append(indent).append("    ints[").append(slot).append("] = x;\n");
+                    sb.append(indent).append("    if (x").append(cmp).append(value(bound)).append(") ")
+                            .append(jump(branch.target, k, region)).append('\n');
+                    sb.append(indent).append("    ").append(jump(k + 2, k, region)).append('\n');
+                    sb.append(indent).append("}\n");
+                }
+                generic(sb, k, region);
+                return;
+            }
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case MOD:
+            case XOR:
+            case SHR:
+            case SHL:
+            case OR:
+            case AND: {
+                String operator = arithmetic(ins.op);
+                if (isPure(args[0]) && isPure(args[1]) && args[2].kind == Operand.Kind.TO_ALIAS) {
+                    sb.append(indent).append("if (").append(available(args[0], args[1])).append(") {\n");
+                    sb.append(indent).append("    v.setInt(").append(args[2].slot).append(", ").append(value(args[0]))
+                            .append(operator).append(value(args[1])).append(");\n");
+                    sb.append(indent).append("} else {\n");
+                    generic(sb, k, region, indent + "    ");
+                    sb.append(indent).append("}\n");
+                    return;
+                }
+                generic(sb, k, region);
+                return;
+            }
+            case RAND:
+                if (args[0].kind == Operand.Kind.TO_ALIAS) {
+                    sb.append(indent).append("v.setInt(").append(args[0].slot).append(", c.random.nextInt(2));\n");
+                    return;
+                }
+                generic(sb, k, region);
+                return;
+            case RAND_INT:
+                if (isPure(args[0]) && isPure(args[1]) && args[2].kind == Operand.Kind.TO_ALIAS) {
+                    sb.append(indent).append("if (").append(available(args[0], args[1])).append(" && ").append(value(args[0]))
+                            .append(" < ").append(value(args[1])).append(") {\n");
+                    sb.append(indent).append("    v.setInt(").append(args[2].slot).append(", c.random.nextInt(").append(value(args[0]))
+                            .append(", ").append(value(args[1])).append("));\n");
+                    sb.append(indent).append("} else {\n");
+                    generic(sb, k, region, indent + "    ");
+                    sb.append(indent).append("}\n");
+                    return;
+                }
+                generic(sb, k, region);
+                return;
+            case ALIAS:
+                if (args[0].kind == Operand.Kind.LITERAL && args[0].isInt) {
+                    sb.append(indent).append("v.setInt(").append(args[1].slot).append(", ").append(value(args[0])).append(");\n");
+                    return;
+                }
+                generic(sb, k, region);
+                return;
+            default:
+                generic(sb, k, region);
+        }
+    }
+
+    private static void generic(StringBuilder sb, int k, Region region) {
+        generic(sb, k, region, "                    ");
+    }
+
+    private static void generic(StringBuilder sb, int k, Region region, String indent) {
+        sb.append(indent).append("ip = c.step(").append(k).append(");\n");
+        sb.append(indent).append("if (ip != ").append(k + 1).append(") {\n");
+        sb.append(indent).append("    if (ip < ").append(region.header).append(" || ip > ").append(region.latch);
+        if (region.fuel) {
+            sb.append(" || ip <= ").append(k).append(" && ").append(SPENT);
+        }
+        sb.append(") return ip;\n");
+        sb.append(indent).append("    continue;\n");
+        sb.append(indent).append("}\n");
+    }
+
+    private static String jump(int target, int k, Region region) {
+        if (target < region.header || target > region.latch) {
+            return "return " + target + ";";
+        }
+        if (target <= k && region.fuel) {
+            return "{ if (" + SPENT + ") return " + target + "; ip = " + target + "; continue; }";
+        }
+        return "{ ip = " + target + "; continue; }";
+    }
+
+    private static boolean isPure(Operand operand) {
+        return operand.kind == Operand.Kind.ALIAS || (operand.kind == Operand.Kind.LITERAL && operand.isInt);
+    }
+
+    private static String available(Operand a, Operand b) {
+        String left = a.kind == Operand.Kind.ALIAS ? "kinds[" + a.slot + "] == 1" : null;
+        String right = b.kind == Operand.Kind.ALIAS ? "kinds[" + b.slot + "] == 1" : null;
+        if (left == null && right == null) {
+            return "true";
+        }
+        return left == null ? right : right == null ? left : left + " && " + right;
+    }
+
+    private static String value(Operand operand) {
+        return operand.kind == Operand.Kind.ALIAS ? "ints[" + operand.slot + "]" : "(" + operand.num + ")";
+    }
+
+    private static String comparison(String operator) {
+        switch (operator) {
+            case "<":
+                return " < ";
+            case ">":
+                return " > ";
+            case "=":
+                return " == ";
+            case "x":
+                return " != ";
+            default:
+                return null;
+        }
+    }
+
+    private static String arithmetic(Op op) {
+        switch (op) {
+            case ADD:
+                return " + ";
+            case SUB:
+                return " - ";
+            case MUL:
+                return " * ";
+            case DIV:
+                return " / ";
+            case MOD:
+                return " % ";
+            case XOR:
+                return " ^ ";
+            case SHR:
+                return " >> ";
+            case SHL:
+                return " << ";
+            case OR:
+                return " | ";
+            default:
+                return " & ";
+        }
+    }
+
+    static final class JavaSource {
+
+        static byte[] compile(String name, String source, String tool) {
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            JavaFileManager files = new ForwardingJavaFileManager<JavaFileManager>(javac.getStandardFileManager(diagnostics, null, null)) {
+                @Override
+                public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+                    return new SimpleJavaFileObject(URI.create("mem:///" + className + kind.extension), kind) {
+                        @Override
+                        public OutputStream openOutputStream() {
+                            return bytes;
+                        }
+                    };
+                }
+            };
+            JavaFileObject unit = new SimpleJavaFileObject(URI.create("string:///" + name + ".java"), JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            };
+            List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-proc:none", "-g:none", "-nowarn");
+            boolean ok = javac.getTask(null, files, diagnostics, options, null, List.of(unit)).call();
+            if (!ok) {
+                for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+                    System.err.println(tool + ": " + d.getMessage(null));
+                }
+                return null;
+            }
+            return bytes.toByteArray();
+        }
+    }
+}
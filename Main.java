@@ -1,10 +1,36 @@
+import java.util.Arrays;
+
 public class Main {
 
-	public static void main(String[] args) {
-	  String code = code.sympl;
-	  if(args.length>0){
-	  	code = args[0];
-	  }
-        new Compiler(code);
+	public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("aot")) {
+            Aot.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("batch")) {
+            System.exit(Batch.main(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        Options options = options(args);
+        run(() -> new Compiler(options));
+    }
+
+    static Options options(String[] args) {
+        try {
+            return Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    static void run(Runnable program) {
+        try {
+            program.run();
+        } catch (SymplException e) {
+            e.printReport();
+            System.exit(1);
+        }
+        System.exit(0);
     }
-}
\ No newline at end of file
+}
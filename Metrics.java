@@ -0,0 +1,170 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public final class Metrics implements SymplMXBean {
+
+    public static final String NAME = "sympl:type=Interpreter";
+    private static final FrameStats NO_FRAMES = new FrameStats();
+    private static final AtomicInteger ids = new AtomicInteger();
+
+    private final Compiler compiler;
+    private final String file;
+    private ObjectName name;
+    private final long thread = Thread.currentThread().getId();
+    private long sampledAt = System.nanoTime(), sampledCount;
+    private double rate;
+    private volatile long executed;
+    private volatile int leftDepth, rightDepth, stringPoolSize, aliasCount;
+
+    private Metrics(Compiler compiler, String file) {
+        this.compiler = compiler;
+        this.file = file;
+    }
+
+    static Metrics register(Compiler compiler, String file) {
+        Metrics metrics = new Metrics(compiler, file);
+        try {
+            ObjectName name = new ObjectName(NAME + ",id=" + ids.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+            metrics.name = name;
+        } catch (JMException | SecurityException e) {
+            System.err.println("Could not register " + NAME + ": " + e.getMessage());
+            return null;
+        }
+        return metrics;
+    }
+
+    void publish(long executed, int leftDepth, int rightDepth, int stringPoolSize, int aliasCount) {
+        this.executed = executed;
+        this.leftDepth = leftDepth;
+        this.rightDepth = rightDepth;
+        this.stringPoolSize = stringPoolSize;
+        this.aliasCount = aliasCount;
+    }
+
+    void unregister() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException | SecurityException e) {
+            // the bean has already been removed
+        }
+    }
+
+    private FrameStats frames() {
+        Screen window = compiler.window();
+        return window == null ? NO_FRAMES : window.stats();
+    }
+
+    @Override
+    public String getFile() {
+        return file;
+    }
+
+    @Override
+    public long getInstructions() {
+        return executed;
+    }
+
+    @Override
+    public synchronized double getInstructionsPerSecond() {
+        long now = System.nanoTime(), count = executed;
+        long elapsed = now - sampledAt;
+        if (elapsed >= TimeUnit.SECONDS.toNanos(1) || rate == 0) {
+            rate = elapsed == 0 ? 0 : (count - sampledCount) * 1e9 / elapsed;
+            sampledAt = now;
+            sampledCount = count;
+        }
+        return rate;
+    }
+
+    @Override
+    public int getLeftStackDepth() {
+        return leftDepth;
+    }
+
+    @Override
+    public int getRightStackDepth() {
+        return rightDepth;
+    }
+
+    @Override
+    public int getStringPoolSize() {
+        return stringPoolSize;
+    }
+
+    @Override
+    public int getAliasCount() {
+        return aliasCount;
+    }
+
+    @Override
+    public long getSeed() {
+        return compiler.seed();
+    }
+
+    @Override
+    public long getFrames() {
+        return frames().frames();
+    }
+
+    @Override
+    public long getUpdates() {
+        return frames().updates();
+    }
+
+    @Override
+    public long getDroppedFrames() {
+        return frames().dropped();
+    }
+
+    @Override
+    public long getLateFrames() {
+        return frames().late();
+    }
+
+    @Override
+    public Histogram.Snapshot getFrameTime() {
+        return frames().frameTime.snapshot();
+    }
+
+    @Override
+    public Histogram.Snapshot getUpdateTime() {
+        return frames().updateTime.snapshot();
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(thread);
+        }
+        return -1;
+    }
+
+    @Override
+    public long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(gc.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    @Override
+    public long getGcTimeMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(gc.getCollectionTime(), 0);
+        }
+        return time;
+    }
+
+    @Override
+    public void resetHistograms() {
+        frames().frameTime.reset();
+        frames().updateTime.reset();
+    }
+}
@@ -0,0 +1,97 @@
+import java.util.HashMap;
+
+public enum Op {
+    PUSH_LEFT("[", 1),
+    PUSH_LEFT_MANY("[.", 0),
+    PUSH_RIGHT("]", 1),
+    PUSH_RIGHT_MANY("].", 0),
+    PUSH_STRING("'", 1),
+    LEFT_TO_RIGHT("\\/", 0),
+    RIGHT_TO_LEFT("/\\", 0),
+    PEEK_RIGHT_TO_LEFT("()", 0),
+    PEEK_LEFT_TO_RIGHT(")(", 0),
+    PRINT_LEFT("~l", 0),
+    PRINT_RIGHT("~r", 0),
+    PRINT("~", 1),
+    BRANCH("!", 4),
+    ADD("+", 3),
+    CONCAT("concat", 3),
+    SUB("-", 3),
+    MUL("*", 3),
+    DIV(":", 3),
+    MOD("%", 3),
+    DELETE(";", 1),
+    SIN("sin", 2),
+    COS("cos", 2),
+    TAN("tan", 2),
+    ATAN("atan", 2),
+    ATAN2("atan2", 3),
+    POW("pow", 3),
+    SQRT("sqrt", 2),
+    XOR("^", 3),
+    SHR(">", 3),
+    SHL("<", 3),
+    OR("|", 3),
+    AND("&", 3),
+    WINDOW("WC", 3),
+    WINDOW_GRID("WCG", 5),
+    WINDOW_BC("WBC", 0),
+    RENDER("WR", 0),
+    UPDATE("WU", 0),
+    WINDOW_SA2S("WSA2S", 0),
+    NO_LOOP("WNL", 0),
+    FPS("WFPS", 1),
+    GET_COLOR("GCS", 3),
+    SET_COLOR("SCS", 3),
+    SET_BLOCK_LEFT("SCBL", 4),
+    SET_BLOCK_RIGHT("SCBR", 4),
+    GET_BLOCK_LEFT("GCBL", 4),
+    GET_BLOCK_RIGHT("GCBR", 4),
+    RECT("#WRECT", 4),
+    RECT_COLORED("#WRECTC", 5),
+    ALIAS("#", 2),
+    SLEEP("$", 1),
+    BIN_TO_DEC("BD", 2),
+    DEC_TO_BIN("DB", 2),
+    RAND("rand", 1),
+    RAND_INT("randi", 3),
+    RAND_LEFT("randl", 3),
+    RAND_RIGHT("randr", 3),
+    GOTO("}", -1),
+    LABEL("{", -1),
+    UNKNOWN("?", -1),
+    NOP("nop", -1),
+    INC_BRANCH("+!", -1),
+    ARITH_RECT("*#WRECT", -1);
+
+    private static final HashMap<String, Op> tokens = new HashMap<>();
+
+    static {
+        for (Op op : values()) {
+            if (op.arity >= 0) {
+                tokens.put(op.token, op);
+            }
+        }
+    }
+
+    public final String token;
+    public final int arity;
+
+    Op(String token, int arity) {
+        this.token = token;
+        this.arity = arity;
+    }
+
+    public static Op of(String token) {
+        Op op = tokens.get(token);
+        if (op != null) {
+            return op;
+        }
+        if (token.startsWith("}")) {
+            return GOTO;
+        } else if (token.startsWith("{")) {
+            return LABEL;
+        }
+        return UNKNOWN;
+    }
+}
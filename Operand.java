@@ -0,0 +1,112 @@
+public final class Operand {
+
+    public enum Kind {
+        LITERAL, ALIAS, INDIRECT,
+        POLL_LEFT, POLL_RIGHT, PEEK_LEFT, PEEK_RIGHT, POLL_STRING, PEEK_STRING,
+        TO_LEFT, TO_RIGHT, TO_STRING, TO_ALIAS, INVALID
+    }
+
+    public final Kind kind;
+    public final String text;
+    public final Operand inner;
+    public final boolean isInt;
+    public final int num;
+    public int slot = -1;
+
+    public Operand(Kind kind, String text, Operand inner) {
+        this.kind = kind;
+        this.text = text;
+        this.inner = inner;
+        this.isInt = kind == Kind.LITERAL && isCanonicalInt(text);
+        this.num = isInt ? Integer.parseInt(text) : 0;
+    }
+
+    private static boolean isCanonicalInt(String s) {
+        int start = s.startsWith("-") ? 1 : 0;
+        int length = s.length() - start;
+        if (length == 0 || length > 10 || (s.charAt(start) == '0' && (length > 1 || start == 1))) {
+            return false;
+        }
+        for (int i = start; i < s.length(); i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                return false;
+            }
+        }
+        long value = Long.parseLong(s);
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+    }
+
+    public static Operand source(String s) {
+        if (s.isEmpty()) {
+            return new Operand(Kind.LITERAL, s, null);
+        }
+        switch (s.charAt(0)) {
+            case ',':
+                return new Operand(Kind.POLL_STRING, s, null);
+            case '.':
+                return new Operand(Kind.PEEK_STRING, s, null);
+            case '\\':
+                return new Operand(Kind.POLL_LEFT, s, null);
+            case '/':
+                return new Operand(Kind.POLL_RIGHT, s, null);
+            case '(':
+                return new Operand(Kind.PEEK_LEFT, s, null);
+            case ')':
+                return new Operand(Kind.PEEK_RIGHT, s, null);
+            case '@': {
+                if (s.length() == 1) {
+                    return new Operand(Kind.ALIAS, "", null);
+                }
+                switch (s.charAt(1)) {
+                    case ',':
+                    case '.':
+                    case '\\':
+                    case '/':
+                    case '(':
+                    case ')':
+                        return source(s.substring(1));
+                    case '@':
+                        return new Operand(Kind.INDIRECT, s, source(s.substring(1)));
+                    default:
+                        return new Operand(Kind.ALIAS, s.substring(1), null);
+                }
+            }
+            default:
+                return new Operand(Kind.LITERAL, s, null);
+        }
+    }
+
+    public static Operand target(String s) {
+        if (s.isEmpty()) {
+            return new Operand(Kind.INVALID, s, null);
+        }
+        switch (s.charAt(0)) {
+            case '[':
+                return new Operand(Kind.TO_LEFT, s, null);
+            case ']':
+                return new Operand(Kind.TO_RIGHT, s, null);
+            case '\'':
+                return new Operand(Kind.TO_STRING, s, null);
+            case '#':
+                return new Operand(Kind.TO_ALIAS, s.substring(1), null);
+            default:
+                return new Operand(Kind.INVALID, s, null);
+        }
+    }
+
+    public static Operand name(String s) {
+        return new Operand(Kind.TO_ALIAS, s, null);
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case ALIAS:
+                return "@" + text;
+            case TO_ALIAS:
+                return "#" + text;
+            default:
+                return text;
+        }
+    }
+}
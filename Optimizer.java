@@ -0,0 +1,661 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+public class Optimizer {
+
+    static final int VERSION = 1;
+    private static final Operand[] NO_ARGS = new Operand[0];
+    private static final byte TOP = 0, CONST = 1, BOTTOM = 2;
+    private static final int MAX_HOIST_ROUNDS = 64;
+
+    public static Instruction[] optimize(Instruction[] program, int slots, boolean keepStores) {
+        if (program.length == 0) {
+            return program;
+        }
+        propagateConstants(program, slots);
+        if (keepStores) {
+            return program;
+        }
+        eliminateDeadStores(program, slots);
+        program = compact(program, new Instruction[program.length][]);
+        for (int round = 0; round < MAX_HOIST_ROUNDS; round++) {
+            Instruction[] hoisted = hoistInvariants(program, slots);
+            if (hoisted == program) {
+                break;
+            }
+            program = hoisted;
+        }
+        return program;
+    }
+
+    private static final class Cfg {
+        final int[] start, end, blockOf;
+        final int[][] succ, pred;
+        final boolean[] exit;
+        final int count;
+
+        Cfg(Instruction[] program) {
+            int n = program.length;
+            boolean[] leader = new boolean[n + 1];
+            leader[0] = true;
+            for (int i = 0; i < n; i++) {
+                Instruction ins = program[i];
+                if (ins.op == Op.BRANCH || ins.op == Op.GOTO) {
+                    leader[i + 1] = true;
+                    if (ins.target >= 0 && ins.target < n) {
+                        leader[ins.target] = true;
+                    }
+                }
+            }
+            blockOf = new int[n];
+            int blocks = 0;
+            for (int i = 0; i < n; i++) {
+                if (leader[i]) {
+                    blocks++;
+                }
+                blockOf[i] = blocks - 1;
+            }
+            count = blocks;
+            start = new int[count];
+            end = new int[count];
+            for (int i = n - 1; i >= 0; i--) {
+                start[blockOf[i]] = i;
+            }
+            for (int i = 0; i < n; i++) {
+                end[blockOf[i]] = i;
+            }
+            exit = new boolean[count];
+            ArrayList<ArrayList<Integer>> successors = new ArrayList<>(), predecessors = new ArrayList<>();
+            for (int b = 0; b < count; b++) {
+                successors.add(new ArrayList<>());
+                predecessors.add(new ArrayList<>());
+            }
+            for (int b = 0; b < count; b++) {
+                Instruction last = program[end[b]];
+                if ((last.op == Op.BRANCH || last.op == Op.GOTO) && last.target >= 0 && last.target < n) {
+                    link(successors, predecessors, b, blockOf[last.target]);
+                }
+                if (last.op != Op.GOTO && end[b] + 1 < n) {
+                    link(successors, predecessors, b, b + 1);
+                }
+                exit[b] = last.op != Op.GOTO ? end[b] + 1 == n : last.target < 0 || last.target >= n;
+            }
+            succ = toArrays(successors);
+            pred = toArrays(predecessors);
+        }
+
+        private static void link(ArrayList<ArrayList<Integer>> successors, ArrayList<ArrayList<Integer>> predecessors, int from, int to) {
+            if (!successors.get(from).contains(to)) {
+                successors.get(from).add(to);
+                predecessors.get(to).add(from);
+            }
+        }
+
+        private static int[][] toArrays(ArrayList<ArrayList<Integer>> lists) {
+            int[][] arrays = new int[lists.size()][];
+            for (int i = 0; i < arrays.length; i++) {
+                arrays[i] = lists.get(i).stream().mapToInt(Integer::intValue).toArray();
+            }
+            return arrays;
+        }
+
+        boolean isExit(int block) {
+            return exit[block] || succ[block].length == 0;
+        }
+    }
+
+    // constant propagation and folding
+
+    private static void propagateConstants(Instruction[] program, int slots) {
+        Cfg cfg = new Cfg(program);
+        byte[][] inState = new byte[cfg.count][];
+        int[][] inValue = new int[cfg.count][];
+        inState[0] = new byte[slots];
+        inValue[0] = new int[slots];
+        Arrays.fill(inState[0], BOTTOM);
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        work.add(0);
+        while (!work.isEmpty()) {
+            int b = work.poll();
+            byte[] state = inState[b].clone();
+            int[] value = inValue[b].clone();
+            for (int i = cfg.start[b]; i <= cfg.end[b]; i++) {
+                transfer(program[i], state, value);
+            }
+            for (int s : cfg.succ[b]) {
+                if (inState[s] == null) {
+                    inState[s] = state.clone();
+                    inValue[s] = value.clone();
+                    work.add(s);
+                } else if (meet(inState[s], inValue[s], state, value)) {
+                    work.add(s);
+                }
+            }
+        }
+        for (int b = 0; b < cfg.count; b++) {
+            if (inState[b] == null) {
+                continue;
+            }
+            byte[] state = inState[b];
+            int[] value = inValue[b];
+            for (int i = cfg.start[b]; i <= cfg.end[b]; i++) {
+                program[i] = fold(program[i], state, value);
+                transfer(program[i], state, value);
+            }
+        }
+    }
+
+    private static boolean meet(byte[] state, int[] value, byte[] otherState, int[] otherValue) {
+        boolean changed = false;
+        for (int i = 0; i < state.length; i++) {
+            if (state[i] == BOTTOM || otherState[i] == TOP) {
+                continue;
+            }
+            if (state[i] == TOP) {
+                state[i] = otherState[i];
+                value[i] = otherValue[i];
+                changed = true;
+            } else if (otherState[i] == BOTTOM || value[i] != otherValue[i]) {
+                state[i] = BOTTOM;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static void transfer(Instruction ins, byte[] state, int[] value) {
+        int slot = written(ins);
+        if (slot < 0) {
+            return;
+        }
+        Integer result = null;
+        if (ins.op == Op.ALIAS) {
+            result = constant(ins.args[0], state, value);
+        } else if (ins.op != Op.DELETE) {
+            result = evaluate(ins, state, value);
+        }
+        if (result == null) {
+            state[slot] = BOTTOM;
+        } else {
+            state[slot] = CONST;
+            value[slot] = result;
+        }
+    }
+
+    private static Integer constant(Operand operand, byte[] state, int[] value) {
+        if (operand.kind == Operand.Kind.LITERAL && operand.isInt) {
+            return operand.num;
+        }
+        if (operand.kind == Operand.Kind.ALIAS && state[operand.slot] == CONST) {
+            return value[operand.slot];
+        }
+        return null;
+    }
+
+    private static Integer evaluate(Instruction ins, byte[] state, int[] value) {
+        switch (ins.op) {
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case MOD:
+            case XOR:
+            case SHR:
+            case SHL:
+            case OR:
+            case AND:
+                break;
+            default:
+                return null;
+        }
+        Integer a = constant(ins.args[0], state, value), b = constant(ins.args[1], state, value);
+        if (a == null || b == null) {
+            return null;
+        }
+        switch (ins.op) {
+            case ADD:
+                return a + b;
+            case SUB:
+                return a - b;
+            case MUL:
+                return a * b;
+            case DIV:
+                return b == 0 ? null : a / b;
+            case MOD:
+                return b == 0 ? null : a % b;
+            case XOR:
+                return a ^ b;
+            case SHR:
+                return a >> b;
+            case SHL:
+                return a << b;
+            case OR:
+                return a | b;
+            default:
+                return a & b;
+        }
+    }
+
+    private static Instruction fold(Instruction ins, byte[] state, int[] value) {
+        if (ins.parts != null) {
+            return ins;
+        }
+        Operand[] args = ins.args;
+        for (int i = 0; i < args.length; i++) {
+            Operand replaced = substitute(args[i], state, value);
+            if (replaced != args[i]) {
+                if (args == ins.args) {
+                    args = args.clone();
+                }
+                args[i] = replaced;
+            }
+        }
+        Instruction folded = args == ins.args ? ins : copy(ins, ins.op, args);
+        if (folded.op == Op.BRANCH) {
+            return foldBranch(folded);
+        }
+        Integer result = evaluate(folded, state, value);
+        if (result == null) {
+            return folded;
+        }
+        Operand literal = literal(result);
+        Operand to = args[args.length - 1];
+        switch (to.kind) {
+            case TO_ALIAS:
+                return copy(folded, Op.ALIAS, new Operand[]{literal, to});
+            case TO_LEFT:
+                return copy(folded, Op.PUSH_LEFT, new Operand[]{literal});
+            case TO_RIGHT:
+                return copy(folded, Op.PUSH_RIGHT, new Operand[]{literal});
+            case TO_STRING:
+                return copy(folded, Op.PUSH_STRING, new Operand[]{literal});
+            default:
+                return folded;
+        }
+    }
+
+    private static Operand substitute(Operand operand, byte[] state, int[] value) {
+        if (operand.kind == Operand.Kind.ALIAS && state[operand.slot] == CONST) {
+            return literal(value[operand.slot]);
+        }
+        if (operand.kind == Operand.Kind.INDIRECT) {
+            Operand inner = substitute(operand.inner, state, value);
+            if (inner != operand.inner) {
+                return new Operand(Operand.Kind.INDIRECT, operand.text, inner);
+            }
+        }
+        return operand;
+    }
+
+    private static Instruction foldBranch(Instruction branch) {
+        Operand a = branch.args[1], b = branch.args[2];
+        if (!(a.kind == Operand.Kind.LITERAL && a.isInt && b.kind == Operand.Kind.LITERAL && b.isInt) || branch.target < 0) {
+            return branch;
+        }
+        boolean cond;
+        switch (branch.args[0].text) {
+            case "<":
+                cond = a.num < b.num;
+                break;
+            case ">":
+                cond = a.num > b.num;
+                break;
+            case "=":
+                cond = a.num == b.num;
+                break;
+            case "x":
+                cond = a.num != b.num;
+                break;
+            default:
+                return branch;
+        }
+        Instruction folded = new Instruction(cond ? Op.GOTO : Op.NOP, NO_ARGS, branch.line, branch.label, null);
+        folded.target = cond ? branch.target : -1;
+        return folded;
+    }
+
+    private static Operand literal(int value) {
+        return new Operand(Operand.Kind.LITERAL, Integer.toString(value), null);
+    }
+
+    private static Instruction copy(Instruction ins, Op op, Operand[] args) {
+        Instruction copy = new Instruction(op, args, ins.line, ins.label, ins.message);
+        copy.target = ins.target;
+        return copy;
+    }
+
+    // dead store elimination
+
+    private static void eliminateDeadStores(Instruction[] program, int slots) {
+        Cfg cfg = new Cfg(program);
+        BitSet[] liveIn = liveness(program, cfg, slots);
+        for (int b = 0; b < cfg.count; b++) {
+            BitSet live = liveOut(cfg, liveIn, b, slots);
+            for (int i = cfg.end[b]; i >= cfg.start[b]; i--) {
+                Instruction ins = program[i];
+                int slot = written(ins);
+                if (slot >= 0 && !live.get(slot) && isRemovable(ins)) {
+                    program[i] = new Instruction(Op.NOP, NO_ARGS, ins.line, null, null);
+                    continue;
+                }
+                step(ins, i, live, slots);
+            }
+        }
+    }
+
+    private static BitSet[] liveness(Instruction[] program, Cfg cfg, int slots) {
+        BitSet[] liveIn = new BitSet[cfg.count];
+        for (int b = 0; b < cfg.count; b++) {
+            liveIn[b] = new BitSet(slots);
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int b = cfg.count - 1; b >= 0; b--) {
+                BitSet live = liveOut(cfg, liveIn, b, slots);
+                for (int i = cfg.end[b]; i >= cfg.start[b]; i--) {
+                    step(program[i], i, live, slots);
+                }
+                if (!live.equals(liveIn[b])) {
+                    liveIn[b] = live;
+                    changed = true;
+                }
+            }
+        }
+        return liveIn;
+    }
+
+    private static BitSet liveOut(Cfg cfg, BitSet[] liveIn, int block, int slots) {
+        BitSet live = new BitSet(slots);
+        if (cfg.isExit(block)) {
+            live.set(0, slots);
+        }
+        for (int s : cfg.succ[block]) {
+            live.or(liveIn[s]);
+        }
+        return live;
+    }
+
+    private static void step(Instruction ins, int at, BitSet live, int slots) {
+        int slot = written(ins);
+        if (slot >= 0) {
+            live.clear(slot);
+        }
+        if (reads(ins, live) || canStop(ins, at)) {
+            live.set(0, slots);
+        }
+    }
+
+    // the program can end before or right after this instruction, with every alias observable:
+    // it may throw, end the program (WNL) or jump backwards, where the budget, timeout and window close stop it
+    private static boolean canStop(Instruction ins, int at) {
+        switch (ins.op) {
+            case LABEL:
+            case NOP:
+                return false;
+            case GOTO:
+                return ins.target <= at;
+            default:
+                return !isRemovable(ins);
+        }
+    }
+
+    private static boolean isRemovable(Instruction ins) {
+        switch (ins.op) {
+            case ALIAS:
+                return isPure(ins.args[0]);
+            case ADD:
+            case SUB:
+            case MUL:
+            case CONCAT:
+                return isPure(ins.args[0]) && isPure(ins.args[1]);
+            default:
+                return false;
+        }
+    }
+
+    // loop invariant code motion
+
+    private static Instruction[] hoistInvariants(Instruction[] program, int slots) {
+        Cfg cfg = new Cfg(program);
+        int[] idom = dominators(cfg);
+        BitSet[] liveIn = liveness(program, cfg, slots);
+        for (int b = 0; b < cfg.count; b++) {
+            for (int header : cfg.succ[b]) {
+                if (!dominates(idom, header, b)) {
+                    continue;
+                }
+                BitSet body = loopBody(cfg, header, b);
+                Instruction[][] inserted = hoistFrom(program, cfg, idom, liveIn[header], header, body, slots);
+                if (inserted != null) {
+                    return compact(program, inserted);
+                }
+            }
+        }
+        return program;
+    }
+
+    private static Instruction[][] hoistFrom(Instruction[] program, Cfg cfg, int[] idom, BitSet headerLive, int header, BitSet body, int slots) {
+        if (!hasPreheader(program, cfg, header, body)) {
+            return null;
+        }
+        int[] defs = new int[slots];
+        for (int b = body.nextSetBit(0); b >= 0; b = body.nextSetBit(b + 1)) {
+            for (int i = cfg.start[b]; i <= cfg.end[b]; i++) {
+                int slot = written(program[i]);
+                if (slot >= 0) {
+                    defs[slot]++;
+                }
+            }
+        }
+        ArrayList<Integer> exits = new ArrayList<>();
+        for (int b = body.nextSetBit(0); b >= 0; b = body.nextSetBit(b + 1)) {
+            boolean exit = cfg.isExit(b);
+            for (int s : cfg.succ[b]) {
+                exit |= !body.get(s);
+            }
+            if (exit) {
+                exits.add(b);
+            }
+        }
+        ArrayList<Instruction> hoisted = new ArrayList<>();
+        for (int b = body.nextSetBit(0); b >= 0; b = body.nextSetBit(b + 1)) {
+            boolean dominatesExits = true;
+            for (int exit : exits) {
+                dominatesExits &= dominates(idom, b, exit);
+            }
+            if (!dominatesExits) {
+                continue;
+            }
+            for (int i = cfg.start[b]; i <= cfg.end[b]; i++) {
+                Instruction ins = program[i];
+                int slot = written(ins);
+                if (slot < 0 || !isRemovable(ins) || defs[slot] != 1 || headerLive.get(slot)
+                        || isWritten(ins.args[0], defs) || (ins.op != Op.ALIAS && isWritten(ins.args[1], defs))) {
+                    continue;
+                }
+                hoisted.add(ins);
+                program[i] = null;
+            }
+        }
+        if (hoisted.isEmpty()) {
+            return null;
+        }
+        Instruction[][] inserted = new Instruction[program.length][];
+        inserted[cfg.start[header]] = hoisted.toArray(new Instruction[0]);
+        return inserted;
+    }
+
+    private static boolean hasPreheader(Instruction[] program, Cfg cfg, int header, BitSet body) {
+        int outside = 0;
+        for (int p : cfg.pred[header]) {
+            if (body.get(p)) {
+                continue;
+            }
+            Instruction last = program[cfg.end[p]];
+            if (cfg.end[p] + 1 != cfg.start[header] || last.op == Op.GOTO
+                    || (last.op == Op.BRANCH && last.target == cfg.start[header])) {
+                return false;
+            }
+            outside++;
+        }
+        return outside == 1 || (outside == 0 && header == 0);
+    }
+
+    private static boolean isWritten(Operand operand, int[] defs) {
+        return operand.kind == Operand.Kind.ALIAS && defs[operand.slot] > 0;
+    }
+
+    private static BitSet loopBody(Cfg cfg, int header, int latch) {
+        BitSet body = new BitSet(cfg.count);
+        body.set(header);
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        if (!body.get(latch)) {
+            body.set(latch);
+            work.add(latch);
+        }
+        while (!work.isEmpty()) {
+            for (int p : cfg.pred[work.poll()]) {
+                if (!body.get(p)) {
+                    body.set(p);
+                    work.add(p);
+                }
+            }
+        }
+        return body;
+    }
+
+    private static int[] dominators(Cfg cfg) {
+        int[] order = new int[cfg.count];
+        int[] rpo = new int[cfg.count];
+        Arrays.fill(rpo, -1);
+        int visited = postOrder(cfg, order);
+        for (int i = 0; i < visited; i++) {
+            rpo[order[i]] = visited - 1 - i;
+        }
+        int[] idom = new int[cfg.count];
+        Arrays.fill(idom, -1);
+        idom[0] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = visited - 1; i >= 0; i--) {
+                int b = order[i];
+                if (b == 0) {
+                    continue;
+                }
+                int dom = -1;
+                for (int p : cfg.pred[b]) {
+                    if (idom[p] < 0) {
+                        continue;
+                    }
+                    dom = dom < 0 ? p : intersect(idom, rpo, p, dom);
+                }
+                if (dom >= 0 && idom[b] != dom) {
+                    idom[b] = dom;
+                    changed = true;
+                }
+            }
+        }
+        return idom;
+    }
+
+    private static int postOrder(Cfg cfg, int[] order) {
+        boolean[] seen = new boolean[cfg.count];
+        int[] stack = new int[cfg.count];
+        int[] next = new int[cfg.count];
+        int top = 0, count = 0;
+        stack[top++] = 0;
+        seen[0] = true;
+        while (top > 0) {
+            int b = stack[top - 1];
+            if (next[b] < cfg.succ[b].length) {
+                int s = cfg.succ[b][next[b]++];
+                if (!seen[s]) {
+                    seen[s] = true;
+                    stack[top++] = s;
+                }
+            } else {
+                order[count++] = b;
+                top--;
+            }
+        }
+        return count;
+    }
+
+    private static int intersect(int[] idom, int[] rpo, int a, int b) {
+        while (a != b) {
+            while (rpo[a] > rpo[b]) {
+                a = idom[a];
+            }
+            while (rpo[b] > rpo[a]) {
+                b = idom[b];
+            }
+        }
+        return a;
+    }
+
+    private static boolean dominates(int[] idom, int a, int b) {
+        if (idom[b] < 0) {
+            return false;
+        }
+        while (b != a && b != 0) {
+            b = idom[b];
+        }
+        return b == a;
+    }
+
+    // rebuilding
+
+    private static Instruction[] compact(Instruction[] program, Instruction[][] inserted) {
+        ArrayList<Instruction> result = new ArrayList<>(program.length);
+        int[] remap = new int[program.length + 1];
+        for (int i = 0; i < program.length; i++) {
+            if (inserted[i] != null) {
+                result.addAll(Arrays.asList(inserted[i]));
+            }
+            remap[i] = result.size();
+            if (program[i] != null && program[i].op != Op.NOP) {
+                result.add(program[i]);
+            }
+        }
+        remap[program.length] = result.size();
+        for (Instruction ins : result) {
+            if ((ins.op == Op.BRANCH || ins.op == Op.GOTO) && ins.target >= 0 && ins.target <= program.length) {
+                ins.target = remap[ins.target];
+            }
+        }
+        return result.toArray(new Instruction[0]);
+    }
+
+    // operand helpers
+
+    private static int written(Instruction ins) {
+        for (Operand arg : ins.args) {
+            if (arg.kind == Operand.Kind.TO_ALIAS) {
+                return arg.slot;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean reads(Instruction ins, BitSet live) {
+        for (Operand arg : ins.args) {
+            for (Operand o = arg; o != null; o = o.inner) {
+                if (o.kind == Operand.Kind.INDIRECT) {
+                    return true;
+                }
+                if (o.kind == Operand.Kind.ALIAS) {
+                    live.set(o.slot);
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isPure(Operand operand) {
+        return operand.kind == Operand.Kind.LITERAL || operand.kind == Operand.Kind.ALIAS;
+    }
+}
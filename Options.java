@@ -0,0 +1,102 @@
+import java.nio.channels.WritableByteChannel;
+
+public class Options {
+
+    public String fileName = "code.sympl";
+    public boolean interpretOnly = false;
+    public boolean cache = true;
+    public boolean profile = false;
+    public String profileOutput = null;
+    public boolean jmx = false;
+    public String cacheDir = null;
+    public String output = null;
+    public Output.Flush flush = null;
+    public boolean headless = false;
+    public boolean liveTrace = false;
+    public boolean report = true;
+    public long budget = 0;
+    public long timeout = 0;
+    public Long seed = null;
+    public WritableByteChannel sink = null;
+
+    public static Options parse(String[] args) {
+        Options options = new Options();
+        for (String arg : args) {
+            switch (arg) {
+                case "--interpret":
+                    options.interpretOnly = true;
+                    break;
+                case "--profile":
+                    options.profile = true;
+                    break;
+                case "--jmx":
+                    options.jmx = true;
+                    break;
+                case "--no-jmx":
+                    options.jmx = false;
+                    break;
+                case "--headless":
+                    options.headless = true;
+                    break;
+                case "--no-cache":
+                    options.cache = false;
+                    break;
+                default:
+                    if (arg.startsWith("--budget=")) {
+                        options.budget = number(arg);
+                        break;
+                    }
+                    if (arg.startsWith("--timeout=")) {
+                        options.timeout = number(arg);
+                        break;
+                    }
+                    if (arg.startsWith("--profile=")) {
+                        options.profile = true;
+                        options.profileOutput = arg.substring("--profile=".length());
+                        break;
+                    }
+                    if (arg.startsWith("--seed=")) {
+                        options.seed = number(arg);
+                        break;
+                    }
+                    if (arg.startsWith("--output=")) {
+                        options.output = arg.substring("--output=".length());
+                        break;
+                    }
+                    if (arg.startsWith("--trace=")) {
+                        String mode = arg.substring("--trace=".length());
+                        if (!mode.equals("live") && !mode.equals("ring")) {
+                            throw new IllegalArgumentException("Unknown trace mode: " + arg + " (use live or ring)");
+                        }
+                        options.liveTrace = mode.equals("live");
+                        break;
+                    }
+                    if (arg.startsWith("--flush=")) {
+                        try {
+                            options.flush = Output.Flush.parse(arg.substring("--flush=".length()));
+                        } catch (IllegalArgumentException e) {
+                            throw new IllegalArgumentException("Unknown flush policy: " + arg + " (use line, size or exit)");
+                        }
+                        break;
+                    }
+                    if (arg.startsWith("--cache-dir=")) {
+                        options.cacheDir = arg.substring("--cache-dir=".length());
+                        break;
+                    }
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                    options.fileName = arg;
+            }
+        }
+        return options;
+    }
+
+    private static long number(String arg) {
+        try {
+            return Long.parseLong(arg.substring(arg.indexOf('=') + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + arg);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+public final class Output {
+
+    public enum Flush {
+        LINE, SIZE, EXIT;
+
+        public static Flush parse(String name) {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final int CAPACITY = Integer.getInteger("sympl.outputBuffer", 1 << 16);
+    private static final int FLUSH_BYTES = Integer.getInteger("sympl.outputFlushBytes", 1 << 13);
+
+    private final WritableByteChannel channel;
+    private final boolean owned, stdout;
+    private final Flush flush;
+    private final ByteBuffer buffer;
+    private final Charset charset;
+    private final boolean utf8;
+    private final byte[] digits = new byte[11];
+    private final Thread hook = new Thread(this::flush);
+    private boolean sectionBreaks;
+    private char high;
+
+    public Output(WritableByteChannel channel, boolean owned, Flush flush, int capacity, Charset charset) {
+        this(channel, owned, false, flush, capacity, charset);
+    }
+
+    private Output(WritableByteChannel channel, boolean owned, boolean stdout, Flush flush, int capacity, Charset charset) {
+        this.channel = channel;
+        this.charset = charset;
+        this.utf8 = charset.equals(StandardCharsets.UTF_8);
+        this.owned = owned;
+        this.stdout = stdout;
+        this.flush = flush;
+        this.buffer = ByteBuffer.allocate(Math.max(capacity, 16));
+        if (owned || stdout) {
+            Runtime.getRuntime().addShutdownHook(hook);
+        }
+    }
+
+    public static Output open(Options options) {
+        if (options.sink != null) {
+            return new Output(options.sink, false, options.flush == null ? Flush.SIZE : options.flush, CAPACITY, StandardCharsets.UTF_8);
+        }
+        if (options.output != null) {
+            try {
+                FileChannel file = FileChannel.open(Paths.get(options.output),
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                return new Output(file, true, options.flush == null ? Flush.SIZE : options.flush, CAPACITY, Charset.defaultCharset());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open " + options.output, e);
+            }
+        }
+        Flush flush = options.flush != null ? options.flush : System.console() != null ? Flush.LINE : Flush.SIZE;
+        String encoding = System.getProperty("sun.stdout.encoding");
+        Charset charset = encoding != null && Charset.isSupported(encoding) ? Charset.forName(encoding) : Charset.defaultCharset();
+        return new Output(Channels.newChannel(System.out), false, true, flush, CAPACITY, charset);
+    }
+
+    public void setSectionBreaks(boolean sectionBreaks) {
+        this.sectionBreaks = sectionBreaks;
+    }
+
+    public synchronized Output print(String s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            put(s.charAt(i));
+        }
+        return this;
+    }
+
+    public synchronized Output text(String s) {
+        if (s == null) {
+            return print("null");
+        }
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            put(sectionBreaks && c == '\u00a7' ? '\n' : c);
+        }
+        return this;
+    }
+
+    public synchronized Output print(int value) {
+        if (value == Integer.MIN_VALUE) {
+            return print("-2147483648");
+        }
+        reserve(digits.length);
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int at = digits.length;
+        do {
+            digits[--at] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        buffer.put(digits, at, digits.length - at);
+        return this;
+    }
+
+    public synchronized Output print(IntDeque stack) {
+        put('[');
+        for (int i = 0, n = stack.size(); i < n; i++) {
+            if (i > 0) {
+                put(',');
+                put(' ');
+            }
+            print(stack.get(i));
+        }
+        put(']');
+        return this;
+    }
+
+    public synchronized Output print(Iterable<String> strings) {
+        put('[');
+        boolean first = true;
+        for (String s : strings) {
+            if (!first) {
+                put(',');
+                put(' ');
+            }
+            first = false;
+            text(s);
+        }
+        put(']');
+        return this;
+    }
+
+    public synchronized Output newline() {
+        put('\n');
+        if (flush == Flush.LINE || flush == Flush.SIZE && buffer.position() >= FLUSH_BYTES) {
+            flush();
+        }
+        return this;
+    }
+
+    public synchronized void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (stdout) {
+                System.out.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    public synchronized void close() {
+        flush();
+        try {
+            if (owned || stdout) {
+                Runtime.getRuntime().removeShutdownHook(hook);
+            }
+        } catch (IllegalStateException e) {
+            // already shutting down, the hook is running or has run
+        }
+        if (owned) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void put(char c) {
+        if (c < 0x80) {
+            reserve(1);
+            buffer.put((byte) c);
+        } else if (!utf8) {
+            putEncoded(c);
+        } else if (c < 0x800) {
+            reserve(2);
+            buffer.put((byte) (0xC0 | c >> 6));
+            buffer.put((byte) (0x80 | c & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+            putSurrogate(c);
+        } else {
+            reserve(3);
+            buffer.put((byte) (0xE0 | c >> 12));
+            buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+            buffer.put((byte) (0x80 | c & 0x3F));
+        }
+    }
+
+    private void putEncoded(char c) {
+        if (Character.isHighSurrogate(c)) {
+            high = c;
+            return;
+        }
+        String s = Character.isLowSurrogate(c) && high != 0 ? new String(new char[]{high, c}) : String.valueOf(c);
+        high = 0;
+        byte[] bytes = s.getBytes(charset);
+        reserve(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void putSurrogate(char c) {
+        if (Character.isHighSurrogate(c)) {
+            high = c;
+            return;
+        }
+        if (high == 0) {
+            put('?');
+            return;
+        }
+        int code = Character.toCodePoint(high, c);
+        high = 0;
+        reserve(4);
+        buffer.put((byte) (0xF0 | code >> 18));
+        buffer.put((byte) (0x80 | code >> 12 & 0x3F));
+        buffer.put((byte) (0x80 | code >> 6 & 0x3F));
+        buffer.put((byte) (0x80 | code & 0x3F));
+    }
+
+    private void reserve(int bytes) {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+public class Peephole {
+
+    static final int VERSION = 1;
+    private static final Operand[] NO_ARGS = new Operand[0];
+
+    public static void optimize(Instruction[] program) {
+        for (Instruction ins : program) {
+            if (ins.op == Op.BRANCH) {
+                while (ins.target >= 0 && ins.target < program.length && program[ins.target].op == Op.LABEL) {
+                    ins.target++;
+                }
+            }
+        }
+        boolean[] targeted = new boolean[program.length + 1];
+        for (Instruction ins : program) {
+            if ((ins.op == Op.BRANCH || ins.op == Op.GOTO) && ins.target >= 0) {
+                targeted[ins.target] = true;
+            }
+        }
+        for (int i = 0; i < program.length; i++) {
+            if (!fuseIncBranch(program, i, targeted)) {
+                fuseArithRect(program, i, targeted);
+            }
+        }
+    }
+
+    private static boolean fuseIncBranch(Instruction[] program, int i, boolean[] targeted) {
+        if (i + 1 >= program.length || targeted[i + 1]) {
+            return false;
+        }
+        Instruction add = program[i], branch = program[i + 1];
+        if ((add.op != Op.ADD && add.op != Op.SUB) || branch.op != Op.BRANCH || branch.target < 0) {
+            return false;
+        }
+        Operand counter = add.args[0];
+        if (counter.kind != Operand.Kind.ALIAS || !add.args[1].isInt
+                || add.args[2].kind != Operand.Kind.TO_ALIAS || add.args[2].slot != counter.slot) {
+            return false;
+        }
+        Operand left = branch.args[1], right = branch.args[2];
+        if (left.kind != Operand.Kind.ALIAS || left.slot != counter.slot || !isPure(right)) {
+            return false;
+        }
+        program[i] = fuse(Op.INC_BRANCH, program, i, 2, branch.label, branch.target);
+        return true;
+    }
+
+    private static boolean fuseArithRect(Instruction[] program, int i, boolean[] targeted) {
+        int end = i;
+        while (end < program.length && isPureArithmetic(program[end]) && (end == i || !targeted[end])) {
+            end++;
+        }
+        if (end == i || end >= program.length || targeted[end]) {
+            return false;
+        }
+        Instruction rect = program[end];
+        if (rect.op != Op.RECT && rect.op != Op.RECT_COLORED) {
+            return false;
+        }
+        for (Operand arg : rect.args) {
+            if (!isPure(arg)) {
+                return false;
+            }
+        }
+        program[i] = fuse(Op.ARITH_RECT, program, i, end - i + 1, null, -1);
+        return true;
+    }
+
+    private static Instruction fuse(Op op, Instruction[] program, int start, int count, String label, int target) {
+        Instruction[] parts = new Instruction[count];
+        System.arraycopy(program, start, parts, 0, count);
+        for (int j = 1; j < count; j++) {
+            program[start + j] = new Instruction(Op.NOP, NO_ARGS, parts[j].line, null, null);
+        }
+        Instruction fused = new Instruction(op, NO_ARGS, parts[0].line, label, null, parts);
+        fused.target = target;
+        return fused;
+    }
+
+    private static boolean isPureArithmetic(Instruction ins) {
+        switch (ins.op) {
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case MOD:
+                return isPure(ins.args[0]) && isPure(ins.args[1]) && ins.args[2].kind == Operand.Kind.TO_ALIAS;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isPure(Operand operand) {
+        return operand.kind == Operand.Kind.ALIAS || (operand.kind == Operand.Kind.LITERAL && operand.isInt);
+    }
+
+    public static String listing(Instruction[] program) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < program.length; i++) {
+            sb.append(String.format("%4d: %s%n", i, program[i]));
+        }
+        return sb.toString();
+    }
+}
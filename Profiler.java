@@ -0,0 +1,221 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+public final class Profiler {
+
+    public static final String DEFAULT = "sympl-profile";
+    private static final long LONG_INSTRUCTION = Long.getLong("sympl.profile.longNanos", 1_000_000L);
+    private static final int TOP = 20;
+    private static final AtomicInteger runs = new AtomicInteger();
+
+    @Name("sympl.Window")
+    @Label("Sympl Window")
+    @Category("Sympl")
+    static final class WindowEvent extends Event {
+        @Label("Width")
+        int width;
+        @Label("Height")
+        int height;
+        @Label("Title")
+        String title;
+    }
+
+    @Name("sympl.Frame")
+    @Label("Sympl Frame")
+    @Category("Sympl")
+    static final class FrameEvent extends Event {
+        @Label("Frame")
+        long frame;
+    }
+
+    @Name("sympl.LongInstruction")
+    @Label("Sympl Long Instruction")
+    @Category("Sympl")
+    static final class LongInstructionEvent extends Event {
+        @Label("Instruction Pointer")
+        int ip;
+        @Label("Instruction")
+        String instruction;
+        @Label("Duration")
+        @Timespan
+        long nanos;
+    }
+
+    private final Instruction[] program;
+    private final Source lines;
+    private final String output;
+    private final long[] counts;
+    private final long[] nanos;
+    private final long started = System.nanoTime();
+
+    public Profiler(Instruction[] program, Source lines, String output) {
+        this.program = program;
+        this.lines = lines;
+        this.output = output == null ? DEFAULT : output;
+        this.counts = new long[program.length];
+        this.nanos = new long[program.length];
+    }
+
+    public void record(int ip, long elapsed) {
+        counts[ip]++;
+        nanos[ip] += elapsed;
+        if (elapsed >= LONG_INSTRUCTION) {
+            LongInstructionEvent event = new LongInstructionEvent();
+            if (event.isEnabled()) {
+                event.ip = ip;
+                event.instruction = program[ip].toString();
+                event.nanos = elapsed;
+                event.commit();
+            }
+        }
+    }
+
+    public static String unique(String name) {
+        return name + "-" + ProcessHandle.current().pid() + "-" + runs.incrementAndGet();
+    }
+
+    public static void window(int width, int height, String title) {
+        WindowEvent event = new WindowEvent();
+        if (event.isEnabled()) {
+            event.width = width;
+            event.height = height;
+            event.title = title;
+            event.commit();
+        }
+    }
+
+    public void write() {
+        String report = output + ".txt", collapsed = output + ".collapsed";
+        try {
+            Files.write(Paths.get(collapsed), collapsed());
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(report)))) {
+                report(out);
+            }
+            System.err.println("Profile written to " + report + " and " + collapsed);
+        } catch (IOException e) {
+            System.err.println("Could not write the profile: " + e.getMessage());
+        }
+    }
+
+    private void report(PrintWriter out) {
+        long wall = System.nanoTime() - started;
+        long total = 0, executed = 0;
+        for (int i = 0; i < program.length; i++) {
+            total += nanos[i];
+            executed += counts[i];
+        }
+        out.printf("wall %.3f ms, %d instructions, %.3f ms inside instructions%n%n", wall / 1e6, executed, total / 1e6);
+
+        EnumMap<Op, long[]> byOp = new EnumMap<>(Op.class);
+        Map<String, long[]> byLabel = new LinkedHashMap<>();
+        String[] blocks = blocks();
+        for (int i = 0; i < program.length; i++) {
+            if (counts[i] == 0) {
+                continue;
+            }
+            add(byOp.computeIfAbsent(program[i].op, op -> new long[2]), i);
+            add(byLabel.computeIfAbsent(blocks[i], label -> new long[2]), i);
+        }
+        List<Map.Entry<String, long[]>> ops = new ArrayList<>();
+        byOp.forEach((op, v) -> ops.add(Map.entry(op.name() + " " + op.token, v)));
+        table(out, "Opcodes", ops, total);
+        table(out, "Label blocks", new ArrayList<>(byLabel.entrySet()), total);
+
+        Integer[] order = new Integer[program.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(nanos[b], nanos[a]));
+        out.printf("Hottest instructions%n%8s %12s %12s %7s  %s%n", "ip", "count", "ms", "%", "source");
+        for (int i = 0; i < Math.min(TOP, order.length) && counts[order[i]] > 0; i++) {
+            int ip = order[i];
+            out.printf("%8d %12d %12.3f %6.2f%%  %s%n", ip, counts[ip], nanos[ip] / 1e6, percent(nanos[ip], total), lines.line(program[ip].line));
+        }
+    }
+
+    private void add(long[] into, int ip) {
+        into[0] += counts[ip];
+        into[1] += nanos[ip];
+    }
+
+    private static void table(PrintWriter out, String title, List<Map.Entry<String, long[]>> rows, long total) {
+        rows.sort((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]));
+        out.printf("%s%n%-24s %12s %12s %7s %10s%n", title, "name", "count", "ms", "%", "ns/op");
+        for (Map.Entry<String, long[]> row : rows) {
+            long[] v = row.getValue();
+            out.printf("%-24s %12d %12.3f %6.2f%% %10.1f%n", row.getKey(), v[0], v[1] / 1e6, percent(v[1], total), (double) v[1] / v[0]);
+        }
+        out.println();
+    }
+
+    private static double percent(long part, long total) {
+        return total == 0 ? 0 : 100.0 * part / total;
+    }
+
+    private String[] blocks() {
+        String[] blocks = new String[program.length];
+        String current = "main";
+        for (int i = 0; i < program.length; i++) {
+            if (program[i].op == Op.LABEL) {
+                current = program[i].label;
+            }
+            blocks[i] = current;
+        }
+        return blocks;
+    }
+
+    private List<String> collapsed() {
+        int[] latch = new int[program.length];
+        Arrays.fill(latch, -1);
+        for (int k = 0; k < program.length; k++) {
+            Instruction ins = program[k];
+            int target = ins.op == Op.INC_BRANCH ? ins.parts[1].target : ins.op == Op.BRANCH || ins.op == Op.GOTO ? ins.target : -1;
+            if (target < 0 || target > k) {
+                continue;
+            }
+            int header = target;
+            while (header > 0 && program[header].op != Op.LABEL && program[header - 1].op == Op.LABEL) {
+                header--;
+            }
+            latch[header] = Math.max(latch[header], k);
+        }
+        List<Integer> loops = new ArrayList<>();
+        for (int h = 0; h < program.length; h++) {
+            if (latch[h] >= 0) {
+                loops.add(h);
+            }
+        }
+        TreeMap<String, Long> stacks = new TreeMap<>();
+        for (int ip = 0; ip < program.length; ip++) {
+            if (counts[ip] == 0) {
+                continue;
+            }
+            StringBuilder path = new StringBuilder("main");
+            for (int h : loops) {
+                if (h <= ip && latch[h] >= ip) {
+                    path.append(';').append(program[h].op == Op.LABEL ? program[h].label : "loop@" + h);
+                }
+            }
+            path.append(';').append(program[ip].op.token);
+            stacks.merge(path.toString(), Math.max(1, nanos[ip] / 1000), Long::sum);
+        }
+        List<String> out = new ArrayList<>();
+        stacks.forEach((stack, micros) -> out.add(stack + " " + micros));
+        return out;
+    }
+}
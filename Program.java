@@ -0,0 +1,37 @@
+import java.util.Map;
+import java.util.List;
+
+public final class Program {
+
+    public final String header;
+    public final Source lines;
+    public final Instruction[] code;
+    public final List<String> aliases;
+    public final Map<String, Integer> labels;
+
+    public Program(Instruction[] code, List<String> aliases, Map<String, Integer> labels) {
+        this(null, null, code, aliases, labels);
+    }
+
+    public Program(String header, Source lines, Instruction[] code, List<String> aliases, Map<String, Integer> labels) {
+        this.header = header;
+        this.lines = lines;
+        this.code = code;
+        this.aliases = aliases;
+        this.labels = labels;
+    }
+
+    public static Program compile(Source codes) {
+        String header = null;
+        Source lines = codes;
+        if (codes.lines() > 0 && codes.startsWith(0, '_')) {
+            header = codes.line(0);
+            lines = codes.drop(1);
+        }
+        Program decoded = Decoder.decode(lines);
+        boolean keepStores = header != null && (header.indexOf('l') >= 0 || header.indexOf('L') >= 0);
+        Instruction[] code = Optimizer.optimize(decoded.code, decoded.aliases.size(), keepStores);
+        Peephole.optimize(code);
+        return new Program(header, lines, code, decoded.aliases, decoded.labels);
+    }
+}
@@ -0,0 +1,248 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class ProgramCache {
+
+    public static final String EXTENSION = ".symplc";
+    private static final int MAGIC = 0x53594d43;
+    private static final int VERSION = 5;
+    private static final Op[] OPS = Op.values();
+    private static final Operand.Kind[] KINDS = Operand.Kind.values();
+    private static final int LAYOUT = layout();
+    private static final int MIN_SIZE = 16 * 1024;
+
+    public static Program load(String fileName, String cacheDir) {
+        Source source = Source.map(fileName);
+        if (source.bytes().remaining() < MIN_SIZE) {
+            return Program.compile(source);
+        }
+        byte[] key = key(source.bytes());
+        Path cache = cachePath(Paths.get(fileName), cacheDir, key);
+        if (Files.isRegularFile(cache)) {
+            try {
+                Program program = read(Files.readAllBytes(cache), key, source);
+                if (program != null) {
+                    return program;
+                }
+            } catch (IOException | RuntimeException e) {
+                // a stale or truncated cache is rebuilt below
+            }
+        }
+        Program program = Program.compile(source);
+        try {
+            write(cache, program, key);
+        } catch (IOException e) {
+            // caching is best effort, a read-only source directory still runs
+        }
+        return program;
+    }
+
+    private static Path cachePath(Path source, String cacheDir, byte[] key) {
+        String name = source.getFileName().toString();
+        if (name.endsWith(".sympl")) {
+            name = name.substring(0, name.length() - ".sympl".length());
+        }
+        if (cacheDir == null) {
+            return source.resolveSibling(name + EXTENSION);
+        }
+        return Paths.get(cacheDir, name + "-" + HexFormat.of().formatHex(key) + EXTENSION);
+    }
+
+    private static byte[] key(ByteBuffer source) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(source);
+            return sha.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void write(Path cache, Program program, byte[] key) throws IOException {
+        Pool pool = new Pool();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeInt(pool.index(program.header));
+        out.writeInt(program.aliases.size());
+        for (String alias : program.aliases) {
+            out.writeInt(pool.index(alias));
+        }
+        out.writeInt(program.labels.size());
+        for (Map.Entry<String, Integer> label : program.labels.entrySet()) {
+            out.writeInt(pool.index(label.getKey()));
+            out.writeInt(label.getValue());
+        }
+        out.writeInt(program.code.length);
+        for (Instruction ins : program.code) {
+            writeInstruction(out, pool, ins);
+        }
+        out.flush();
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream(body.size() + 64);
+        DataOutputStream header = new DataOutputStream(file);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeInt(LAYOUT);
+        header.write(key);
+        header.writeInt(pool.strings.size());
+        for (String s : pool.strings) {
+            byte[] utf = s.getBytes(StandardCharsets.UTF_8);
+            header.writeInt(utf.length);
+            header.write(utf);
+        }
+        body.writeTo(header);
+        header.flush();
+
+        if (cache.getParent() != null) {
+            Files.createDirectories(cache.getParent());
+        }
+        Path temp = Files.createTempFile(cache.getParent() == null ? Paths.get(".") : cache.getParent(), "sympl", ".tmp");
+        try {
+            Files.write(temp, file.toByteArray());
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeInstruction(DataOutputStream out, Pool pool, Instruction ins) throws IOException {
+        out.writeByte(ins.op.ordinal());
+        out.writeInt(ins.line);
+        out.writeInt(pool.index(ins.label));
+        out.writeInt(pool.index(ins.message));
+        out.writeInt(ins.target);
+        out.writeInt(ins.args.length);
+        for (Operand arg : ins.args) {
+            writeOperand(out, pool, arg);
+        }
+        out.writeInt(ins.parts == null ? -1 : ins.parts.length);
+        if (ins.parts != null) {
+            for (Instruction part : ins.parts) {
+                writeInstruction(out, pool, part);
+            }
+        }
+    }
+
+    private static void writeOperand(DataOutputStream out, Pool pool, Operand operand) throws IOException {
+        out.writeByte(operand.kind.ordinal());
+        out.writeInt(pool.index(operand.text));
+        out.writeInt(operand.slot);
+        out.writeBoolean(operand.inner != null);
+        if (operand.inner != null) {
+            writeOperand(out, pool, operand.inner);
+        }
+    }
+
+    private static int layout() {
+        int h = 1;
+        for (Op op : OPS) {
+            h = 31 * h + op.name().hashCode();
+            h = 31 * h + op.token.hashCode();
+        }
+        for (Operand.Kind kind : KINDS) {
+            h = 31 * h + kind.name().hashCode();
+        }
+        // each pass bumps its VERSION when it changes the code it produces
+        h = 31 * h + Decoder.VERSION;
+        h = 31 * h + Optimizer.VERSION;
+        return 31 * h + Peephole.VERSION;
+    }
+
+    static Program read(byte[] bytes, byte[] key, Source source) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (in.getInt() != MAGIC || in.getInt() != VERSION || in.getInt() != LAYOUT
+                || !Arrays.equals(bytes, in.position(), in.position() + key.length, key, 0, key.length)) {
+            return null;
+        }
+        in.position(in.position() + key.length);
+        String[] pool = new String[in.getInt()];
+        for (int i = 0; i < pool.length; i++) {
+            int length = in.getInt();
+            pool[i] = new String(bytes, in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        }
+        String header = string(pool, in.getInt());
+        int aliasCount = in.getInt();
+        List<String> aliases = new ArrayList<>(aliasCount);
+        for (int i = 0; i < aliasCount; i++) {
+            aliases.add(string(pool, in.getInt()));
+        }
+        int labelCount = in.getInt();
+        Map<String, Integer> labels = new LinkedHashMap<>();
+        for (int i = 0; i < labelCount; i++) {
+            labels.put(string(pool, in.getInt()), in.getInt());
+        }
+        Instruction[] code = new Instruction[in.getInt()];
+        for (int i = 0; i < code.length; i++) {
+            code[i] = readInstruction(in, pool);
+        }
+        return new Program(header, header == null ? source : source.drop(1), code, aliases, labels);
+    }
+
+    private static Instruction readInstruction(ByteBuffer in, String[] pool) {
+        Op op = OPS[in.get()];
+        int line = in.getInt();
+        String label = string(pool, in.getInt());
+        String message = string(pool, in.getInt());
+        int target = in.getInt();
+        Operand[] args = new Operand[in.getInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = readOperand(in, pool);
+        }
+        int partCount = in.getInt();
+        Instruction[] parts = null;
+        if (partCount >= 0) {
+            parts = new Instruction[partCount];
+            for (int i = 0; i < partCount; i++) {
+                parts[i] = readInstruction(in, pool);
+            }
+        }
+        Instruction ins = new Instruction(op, args, line, label, message, parts);
+        ins.target = target;
+        return ins;
+    }
+
+    private static Operand readOperand(ByteBuffer in, String[] pool) {
+        Operand.Kind kind = KINDS[in.get()];
+        String text = string(pool, in.getInt());
+        int slot = in.getInt();
+        Operand inner = in.get() != 0 ? readOperand(in, pool) : null;
+        Operand operand = new Operand(kind, text, inner);
+        operand.slot = slot;
+        return operand;
+    }
+
+    private static String string(String[] pool, int index) {
+        return index < 0 ? null : pool[index];
+    }
+
+    private static final class Pool {
+        final List<String> strings = new ArrayList<>();
+        final Map<String, Integer> indices = new LinkedHashMap<>();
+
+        int index(String s) {
+            if (s == null) {
+                return -1;
+            }
+            return indices.computeIfAbsent(s, key -> {
+                strings.add(key);
+                return strings.size() - 1;
+            });
+        }
+    }
+}
@@ -0,0 +1,26 @@
+public interface Screen extends Runnable {
+
+    void render();
+
+    void update();
+
+    void noLoop();
+
+    void setFps(int fps);
+
+    void setShowFpsUps(boolean show);
+
+    void addRect(int x, int y, int width, int height, int rgb);
+
+    int getColor(int x, int y);
+
+    void setColor(int x, int y, int color);
+
+    void setBlock(int x, int y, int width, int height, int[] colors);
+
+    int[] getBlock(int x, int y, int width, int height);
+
+    FrameStats stats();
+
+    boolean isClosed();
+}
@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public final class Source {
+
+    private static final String[] NO_TOKENS = new String[0];
+
+    private final ByteBuffer bytes;
+    private final int[] starts;
+    private final int[] ends;
+    private final int first;
+
+    private Source(ByteBuffer bytes, int[] starts, int[] ends, int first) {
+        this.bytes = bytes;
+        this.starts = starts;
+        this.ends = ends;
+        this.first = first;
+    }
+
+    public static Source map(String fileName) {
+        if (fileName == null) {
+            throw new IllegalArgumentException("No file name given");
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("File is too large: " + fileName);
+            }
+            return of(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Source of(String[] lines) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append('\n');
+        }
+        return of(ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static Source of(ByteBuffer bytes) {
+        int[] starts = new int[64];
+        int[] ends = new int[64];
+        int count = 0;
+        int limit = bytes.limit();
+        int start = 0;
+        for (int i = 0; i < limit; i++) {
+            byte b = bytes.get(i);
+            if (b != '\n' && b != '\r') {
+                continue;
+            }
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = start;
+            ends[count++] = i;
+            if (b == '\r' && i + 1 < limit && bytes.get(i + 1) == '\n') {
+                i++;
+            }
+            start = i + 1;
+        }
+        if (start < limit) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count + 1);
+                ends = Arrays.copyOf(ends, count + 1);
+            }
+            starts[count] = start;
+            ends[count++] = limit;
+        }
+        return new Source(bytes, Arrays.copyOf(starts, count), Arrays.copyOf(ends, count), 0);
+    }
+
+    public int lines() {
+        return starts.length - first;
+    }
+
+    public Source drop(int lines) {
+        return new Source(bytes, starts, ends, first + lines);
+    }
+
+    public ByteBuffer bytes() {
+        return bytes.duplicate();
+    }
+
+    public String line(int i) {
+        return text(starts[first + i], ends[first + i]);
+    }
+
+    public boolean startsWith(int i, char c) {
+        return starts[first + i] < ends[first + i] && bytes.get(starts[first + i]) == c;
+    }
+
+    public String[] tokens(int i) {
+        int start = starts[first + i], end = ends[first + i];
+        int last = end;
+        while (last > start && bytes.get(last - 1) == ' ') {
+            last--;
+        }
+        if (last == start) {
+            return start == end ? new String[]{""} : NO_TOKENS;
+        }
+        int count = 1;
+        for (int j = start; j < last; j++) {
+            if (bytes.get(j) == ' ') {
+                count++;
+            }
+        }
+        String[] tokens = new String[count];
+        int from = start;
+        int n = 0;
+        for (int j = start; j < last; j++) {
+            if (bytes.get(j) == ' ') {
+                tokens[n++] = text(from, j);
+                from = j + 1;
+            }
+        }
+        tokens[n] = text(from, last);
+        return tokens;
+    }
+
+    private String text(int from, int to) {
+        byte[] raw = new byte[to - from];
+        bytes.get(from, raw);
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,30 @@
+public final class SymplException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Reason {
+        ERROR, BUDGET, TIMEOUT, CANCELLED
+    }
+
+    public final Reason reason;
+    public final int ip;
+    public final String line;
+    public final long executed;
+
+    public SymplException(Reason reason, String message, int ip, String line, long executed, Throwable cause) {
+        super(message, cause);
+        this.reason = reason;
+        this.ip = ip;
+        this.line = line;
+        this.executed = executed;
+    }
+
+    public void printReport() {
+        if (getCause() != null) {
+            getCause().printStackTrace();
+        } else {
+            System.err.println(getMessage());
+        }
+        System.err.println("Error at " + ip + ". -> " + line);
+    }
+}
@@ -0,0 +1,38 @@
+public interface SymplMXBean {
+
+    String getFile();
+
+    long getInstructions();
+
+    double getInstructionsPerSecond();
+
+    int getLeftStackDepth();
+
+    int getRightStackDepth();
+
+    int getStringPoolSize();
+
+    int getAliasCount();
+
+    long getSeed();
+
+    long getFrames();
+
+    long getUpdates();
+
+    long getDroppedFrames();
+
+    long getLateFrames();
+
+    Histogram.Snapshot getFrameTime();
+
+    Histogram.Snapshot getUpdateTime();
+
+    long getAllocatedBytes();
+
+    long getGcCount();
+
+    long getGcTimeMillis();
+
+    void resetHistograms();
+}
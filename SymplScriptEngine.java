@@ -0,0 +1,294 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+
+public final class SymplScriptEngine extends AbstractScriptEngine implements Compilable {
+
+    public static final String LEFT = "left", RIGHT = "right", STRING_POOL = "stringPool";
+    public static final String BUDGET = "sympl.budget", TIMEOUT = "sympl.timeout", SEED = "sympl.seed", PROFILE = "sympl.profile";
+    private static final int CACHED_SCRIPTS = 64;
+
+    private final ScriptEngineFactory factory;
+    private final Map<String, Script> cache = new LinkedHashMap<String, Script>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Script> eldest) {
+            return size() > CACHED_SCRIPTS;
+        }
+    };
+
+    public SymplScriptEngine() {
+        this(new SymplScriptEngineFactory());
+    }
+
+    SymplScriptEngine(ScriptEngineFactory factory) {
+        this.factory = factory;
+    }
+
+    public final class Script extends CompiledScript {
+        private final Program program;
+        private final Jit jit;
+
+        Script(Program program) {
+            this.program = program;
+            this.jit = Jit.isAvailable() ? new Jit(program.code) : null;
+        }
+
+        @Override
+        public Object eval(ScriptContext context) throws ScriptException {
+            Bindings bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+            Options options = new Options();
+            Object file = context.getAttribute(ScriptEngine.FILENAME);
+            options.fileName = file == null ? "<script>" : file.toString();
+            options.headless = true;
+            options.report = false;
+            options.jmx = false;
+            WriterChannel output = new WriterChannel(context.getWriter());
+            options.sink = output;
+            Compiler compiler;
+            try {
+                options.budget = number(context.getAttribute(BUDGET));
+                options.timeout = number(context.getAttribute(TIMEOUT));
+                Object profile = context.getAttribute(PROFILE);
+                options.profileOutput = profile != null ? profile.toString() : Profiler.unique(Profiler.DEFAULT);
+                if (context.getAttribute(SEED) != null) {
+                    options.seed = number(context.getAttribute(SEED));
+                }
+                compiler = new Compiler(options, null, jit);
+                compiler.prepare(program);
+            } catch (RuntimeException e) {
+                output.flush();
+                throw error(e, options.fileName);
+            }
+            try {
+                load(compiler, bindings, program.labels);
+                compiler.run();
+            } catch (RuntimeException e) {
+                throw error(e, options.fileName);
+            } finally {
+                store(compiler, bindings, program.labels);
+                output.flush();
+            }
+            return null;
+        }
+
+        @Override
+        public ScriptEngine getEngine() {
+            return SymplScriptEngine.this;
+        }
+    }
+
+    @Override
+    public Script compile(String script) {
+        synchronized (cache) {
+            Script compiled = cache.get(script);
+            if (compiled == null) {
+                compiled = new Script(Program.compile(Source.of(ByteBuffer.wrap(script.getBytes(StandardCharsets.UTF_8)))));
+                cache.put(script, compiled);
+            }
+            return compiled;
+        }
+    }
+
+    @Override
+    public Script compile(Reader script) throws ScriptException {
+        return compile(read(script));
+    }
+
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return compile(script).eval(context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return eval(read(reader), context);
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return new SimpleBindings();
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return factory;
+    }
+
+    private static void load(Compiler compiler, Bindings bindings, Map<String, Integer> labels) {
+        if (bindings == null) {
+            return;
+        }
+        for (Map.Entry<String, Object> entry : bindings.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            switch (key) {
+                case LEFT:
+                    addInts(compiler.left(), value);
+                    break;
+                case RIGHT:
+                    addInts(compiler.right(), value);
+                    break;
+                case STRING_POOL:
+                    if (value instanceof Iterable) {
+                        for (Object s : (Iterable<?>) value) {
+                            compiler.stringPool().add(String.valueOf(s));
+                        }
+                    }
+                    break;
+                default:
+                    if (labels.containsKey(key)) {
+                        break;
+                    }
+                    Aliases names = compiler.aliases();
+                    if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                        names.setInt(names.slot(key), ((Number) value).intValue());
+                    } else if (value instanceof Number || value instanceof CharSequence || value instanceof Character) {
+                        names.setString(names.slot(key), value.toString());
+                    }
+            }
+        }
+    }
+
+    private static void addInts(IntDeque stack, Object value) {
+        if (value instanceof int[]) {
+            int[] ints = (int[]) value;
+            stack.addAll(ints, 0, ints.length);
+        } else if (value instanceof IntDeque) {
+            stack.addAll((IntDeque) value);
+        } else if (value instanceof Iterable) {
+            for (Object n : (Iterable<?>) value) {
+                stack.add(((Number) n).intValue());
+            }
+        }
+    }
+
+    private static void store(Compiler compiler, Bindings bindings, Map<String, Integer> labels) {
+        if (bindings == null) {
+            return;
+        }
+        bindings.put(LEFT, compiler.left().toArray());
+        bindings.put(RIGHT, compiler.right().toArray());
+        Queue<String> pool = compiler.stringPool();
+        bindings.put(STRING_POOL, new ArrayList<>(pool));
+        Aliases names = compiler.aliases();
+        for (int slot = 0; slot < names.size(); slot++) {
+            String name = names.name(slot);
+            if (labels.containsKey(name)) {
+                continue;
+            }
+            switch (names.kinds[slot]) {
+                case Aliases.INT:
+                    bindings.put(name, names.ints[slot]);
+                    break;
+                case Aliases.STRING:
+                    bindings.put(name, names.strings[slot]);
+                    break;
+                default:
+                    bindings.remove(name);
+            }
+        }
+    }
+
+    private static ScriptException error(RuntimeException e, String fileName) {
+        ScriptException error;
+        if (e instanceof SymplException) {
+            SymplException failure = (SymplException) e;
+            error = new ScriptException(failure.getMessage() + " at " + failure.ip + ": " + failure.line, fileName, -1);
+        } else {
+            error = new ScriptException(e.toString());
+        }
+        error.initCause(e);
+        return error;
+    }
+
+    private static long number(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : value == null ? 0 : Long.parseLong(value.toString());
+    }
+
+    private static String read(Reader reader) throws ScriptException {
+        StringWriter text = new StringWriter();
+        try {
+            reader.transferTo(text);
+        } catch (IOException e) {
+            throw new ScriptException(e);
+        }
+        return text.toString();
+    }
+
+    private static final class WriterChannel implements WritableByteChannel {
+        private final Writer writer;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final ByteBuffer pending = ByteBuffer.allocate(8);
+        private final CharBuffer chars = CharBuffer.allocate(4096);
+
+        WriterChannel(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int written = src.remaining();
+            while (pending.position() > 0 && src.hasRemaining()) {
+                pending.put(src.get());
+                pending.flip();
+                decode(pending);
+                pending.compact();
+            }
+            decode(src);
+            while (src.hasRemaining()) {
+                pending.put(src.get());
+            }
+            return written;
+        }
+
+        private void decode(ByteBuffer bytes) throws IOException {
+            while (true) {
+                boolean overflow = decoder.decode(bytes, chars, false).isOverflow();
+                chars.flip();
+                writer.append(chars);
+                chars.clear();
+                if (!overflow) {
+                    return;
+                }
+            }
+        }
+
+        void flush() {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                // the host's writer is not ours to fail on
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,85 @@
+import java.util.List;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+
+public final class SymplScriptEngineFactory implements ScriptEngineFactory {
+
+    private static final List<String> NAMES = List.of("sympl", "Sympl");
+    private static final List<String> EXTENSIONS = List.of("sympl");
+    private static final List<String> MIME_TYPES = List.of("text/x-sympl");
+
+    @Override
+    public String getEngineName() {
+        return "Sympl";
+    }
+
+    @Override
+    public String getEngineVersion() {
+        return "1.0";
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return EXTENSIONS;
+    }
+
+    @Override
+    public List<String> getMimeTypes() {
+        return MIME_TYPES;
+    }
+
+    @Override
+    public List<String> getNames() {
+        return NAMES;
+    }
+
+    @Override
+    public String getLanguageName() {
+        return "Sympl";
+    }
+
+    @Override
+    public String getLanguageVersion() {
+        return "1.0";
+    }
+
+    @Override
+    public Object getParameter(String key) {
+        switch (key) {
+            case ScriptEngine.ENGINE:
+                return getEngineName();
+            case ScriptEngine.ENGINE_VERSION:
+                return getEngineVersion();
+            case ScriptEngine.NAME:
+                return NAMES.get(0);
+            case ScriptEngine.LANGUAGE:
+                return getLanguageName();
+            case ScriptEngine.LANGUAGE_VERSION:
+                return getLanguageVersion();
+            case "THREADING":
+                return "MULTITHREADED";
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String getMethodCallSyntax(String obj, String m, String... args) {
+        return "}" + m;
+    }
+
+    @Override
+    public String getOutputStatement(String toDisplay) {
+        return "~ " + toDisplay;
+    }
+
+    @Override
+    public String getProgram(String... statements) {
+        return String.join("\n", statements) + "\n";
+    }
+
+    @Override
+    public ScriptEngine getScriptEngine() {
+        return new SymplScriptEngine(this);
+    }
+}
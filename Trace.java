@@ -0,0 +1,151 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public final class Trace {
+
+    public static final int INSTRUCTIONS = 1, STACKS = 2, LABELS = 4, STRING_POOL = 8;
+    public static final int COLOR_INSTRUCTIONS = 16, COLOR_STACKS = 32, COLOR_LABELS = 64;
+
+    private static final int RECORD = 40;
+    private static final int IP = 0, OP = 4, LEFT_SIZE = 8, LEFT_HEAD = 12, RIGHT_SIZE = 16, RIGHT_HEAD = 20;
+    private static final int POOL_SIZE = 24, ALIAS_SLOT = 28, ALIAS_KIND = 32, ALIAS_VALUE = 36;
+    private static final int RECORDS = Integer.highestOneBit(Math.max(Integer.getInteger("sympl.traceRecords", 1 << 16), 1));
+    private static final Op[] OPS = Op.values();
+
+    private final ByteBuffer ring = ByteBuffer.allocateDirect(RECORDS * RECORD).order(ByteOrder.nativeOrder());
+    private final String[] strings = new String[RECORDS];
+    private final Instruction[] program;
+    private final Source lines;
+    private final int flags;
+    private final int[] writes;
+    private long count;
+
+    public Trace(Instruction[] program, Source lines, int flags) {
+        this.program = program;
+        this.lines = lines;
+        this.flags = flags;
+        this.writes = new int[program.length];
+        for (int ip = 0; ip < program.length; ip++) {
+            writes[ip] = written(program[ip]);
+        }
+    }
+
+    private static int written(Instruction ins) {
+        int slot = -1;
+        for (Operand arg : ins.args) {
+            if (arg.kind == Operand.Kind.TO_ALIAS) {
+                slot = arg.slot;
+            }
+        }
+        if (ins.parts != null) {
+            for (Instruction part : ins.parts) {
+                int inner = written(part);
+                slot = inner >= 0 ? inner : slot;
+            }
+        }
+        return slot;
+    }
+
+    public void record(int ip, IntDeque left, IntDeque right, int pool, Aliases names) {
+        int index = (int) (count++ & (RECORDS - 1));
+        int at = index * RECORD;
+        ByteBuffer ring = this.ring;
+        ring.putInt(at + IP, ip);
+        ring.putInt(at + OP, program[ip].op.ordinal());
+        int size = left.size();
+        ring.putInt(at + LEFT_SIZE, size);
+        ring.putInt(at + LEFT_HEAD, size == 0 ? 0 : left.peek());
+        size = right.size();
+        ring.putInt(at + RIGHT_SIZE, size);
+        ring.putInt(at + RIGHT_HEAD, size == 0 ? 0 : right.peek());
+        ring.putInt(at + POOL_SIZE, pool);
+        int slot = writes[ip];
+        ring.putInt(at + ALIAS_SLOT, slot);
+        if (slot >= 0) {
+            byte kind = names.kinds[slot];
+            ring.putInt(at + ALIAS_KIND, kind);
+            ring.putInt(at + ALIAS_VALUE, kind == Aliases.INT ? names.ints[slot] : 0);
+            strings[index] = kind == Aliases.STRING ? names.strings[slot] : null;
+        } else {
+            strings[index] = null;
+        }
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public void render(Output out, Aliases names) {
+        long first = Math.max(0, count - RECORDS);
+        out.print("Trace: ");
+        if (first > 0) {
+            out.print("last ").print(RECORDS).print(" of ");
+        }
+        out.print(Long.toString(count)).print(" instructions").newline();
+        for (long i = first; i < count; i++) {
+            renderRecord(out, names, (int) (i & (RECORDS - 1)));
+        }
+    }
+
+    private void renderRecord(Output out, Aliases names, int index) {
+        int at = index * RECORD;
+        int ip = ring.getInt(at + IP);
+        out.print(ColorConst.GREEN).print(ip).print(": ").print(ColorConst.RESET_COLOR);
+        if ((flags & INSTRUCTIONS) != 0) {
+            color(out, COLOR_INSTRUCTIONS, ColorConst.YELLOW);
+            out.text(lines.line(program[ip].line)).print(" (").print(OPS[ring.getInt(at + OP)].token).print(")");
+            reset(out, COLOR_INSTRUCTIONS);
+        }
+        if ((flags & STACKS) != 0) {
+            color(out, COLOR_STACKS, ColorConst.CYAN);
+            out.print(" LEFT: ");
+            stack(out, ring.getInt(at + LEFT_SIZE), ring.getInt(at + LEFT_HEAD));
+            color(out, COLOR_STACKS, ColorConst.PURPLE);
+            out.print(" RIGHT: ");
+            stack(out, ring.getInt(at + RIGHT_SIZE), ring.getInt(at + RIGHT_HEAD));
+            reset(out, COLOR_STACKS);
+        }
+        if ((flags & STRING_POOL) != 0) {
+            out.print(" pool: ").print(ring.getInt(at + POOL_SIZE));
+        }
+        int slot = ring.getInt(at + ALIAS_SLOT);
+        if ((flags & LABELS) != 0 && slot >= 0) {
+            color(out, COLOR_LABELS, ColorConst.CYAN);
+            out.print(" ").text(names.name(slot)).print(" = ");
+            int kind = ring.getInt(at + ALIAS_KIND);
+            if (kind == Aliases.INT) {
+                out.print(ring.getInt(at + ALIAS_VALUE));
+            } else if (kind == Aliases.STRING && strings[index] != null) {
+                out.text(strings[index]);
+            } else {
+                out.print("null");
+            }
+            reset(out, COLOR_LABELS);
+        }
+        out.newline();
+    }
+
+    private static void stack(Output out, int size, int head) {
+        if (size == 0) {
+            out.print("[]");
+            return;
+        }
+        out.print("[").print(head);
+        if (size > 1) {
+            out.print(", +").print(size - 1).print(" more");
+        }
+        out.print("]");
+    }
+
+    private void color(Output out, int flag, String color) {
+        if ((flags & flag) != 0) {
+            out.print(color);
+        }
+    }
+
+    private void reset(Output out, int flag) {
+        if ((flags & flag) != 0) {
+            out.print(ColorConst.RESET_COLOR);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+public final class Value {
+
+    public boolean isInt;
+    public int num;
+    public String str;
+
+    public void set(int num) {
+        this.isInt = true;
+        this.num = num;
+        this.str = null;
+    }
+
+    public void set(String str) {
+        this.isInt = false;
+        this.str = str;
+    }
+
+    public boolean isNumeric() {
+        if (isInt) {
+            return true;
+        }
+        try {
+            Integer.parseInt(str);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    public int asInt() {
+        return isInt ? num : Integer.parseInt(str);
+    }
+
+    public double asDouble() {
+        return isInt ? num : Double.parseDouble(str);
+    }
+
+    public String asString() {
+        return isInt ? Integer.toString(num) : str;
+    }
+}
@@ -0,0 +1,204 @@
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+public class Bench {
+
+    interface Workload {
+        Object run() throws Exception;
+    }
+
+    private static final Map<String, Supplier<Workload>> benchmarks = new LinkedHashMap<>();
+    private static volatile int sink;
+
+    static {
+        script("interpreter.arith", "bench/arith.sympl", true);
+        script("jit.arith", "bench/arith.sympl", false);
+        script("interpreter.alias", "bench/alias.sympl", true);
+        script("interpreter.stack", "bench/stack.sympl", true);
+        script("interpreter.concat", "bench/concat.sympl", true);
+        benchmarks.put("load.code", () -> () -> Program.compile(Source.map("code.sympl")));
+        for (int[] size : new int[][]{{320, 240}, {1920, 1080}, {3840, 2160}}) {
+            String res = size[0] + "x" + size[1];
+            benchmarks.put("framebuffer.addRect." + res, () -> {
+                Framebuffer frame = new Framebuffer(size[0], size[1]);
+                return () -> {
+                    for (int i = 0; i < 1000; i++) {
+                        frame.addRect(i * 7 % size[0], i * 13 % size[1], 64, 64, i);
+                    }
+                    frame.flush();
+                    return frame;
+                };
+            });
+            benchmarks.put("framebuffer.setColor." + res, () -> {
+                Framebuffer frame = new Framebuffer(size[0], size[1]);
+                return () -> {
+                    for (int i = 0; i < 100000; i++) {
+                        frame.setColor(i * 7 % size[0], i * 13 % size[1], i);
+                    }
+                    frame.flush();
+                    return frame;
+                };
+            });
+            benchmarks.put("framebuffer.getColor." + res, () -> {
+                Framebuffer frame = new Framebuffer(size[0], size[1]);
+                return () -> {
+                    int sum = 0;
+                    for (int i = 0; i < 100000; i++) {
+                        sum += frame.getColor(i * 7 % size[0], i * 13 % size[1]);
+                    }
+                    return sum;
+                };
+            });
+        }
+        benchmarks.put("headless.code", () -> () -> {
+            Process process = new ProcessBuilder(javaCommand("-Djava.awt.headless=true", "Main", "--no-cache", "code.sympl"))
+                    .redirectErrorStream(true).start();
+            process.getInputStream().readAllBytes();
+            if (process.waitFor() != 0) {
+                throw new IllegalStateException("code.sympl exited with " + process.exitValue());
+            }
+            return process.exitValue();
+        });
+    }
+
+    private static void script(String name, String file, boolean interpretOnly) {
+        benchmarks.put(name, () -> {
+            Program program = Program.compile(Source.map(file));
+            Options options = new Options();
+            options.interpretOnly = interpretOnly;
+            options.jmx = false;
+            options.sink = Channels.newChannel(OutputStream.nullOutputStream());
+            Jit jit = interpretOnly || !Jit.isAvailable() ? null : new Jit(program.code);
+            Workload workload = () -> {
+                Compiler compiler = new Compiler(options, null, jit);
+                compiler.prepare(program);
+                compiler.run();
+                return compiler;
+            };
+            if (jit != null) {
+                for (int i = 0; i < 2; i++) {
+                    run(workload);
+                    Jit.awaitCompiles();
+                }
+            }
+            return workload;
+        });
+    }
+
+    private static void run(Workload workload) {
+        try {
+            consume(workload.run());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int warmups = 5, iterations = 10, forks = 2;
+        String child = null;
+        List<String> filters = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi":
+                    warmups = Integer.parseInt(args[++i]);
+                    break;
+                case "-i":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-f":
+                    forks = Integer.parseInt(args[++i]);
+                    break;
+                case "--child":
+                    child = args[++i];
+                    break;
+                default:
+                    filters.add(args[i]);
+            }
+        }
+        if (child != null) {
+            runChild(benchmarks.get(child).get(), warmups, iterations);
+            return;
+        }
+        System.out.printf("%-32s %6s %12s %10s %12s%n", "Benchmark", "Cnt", "Score", "Error", "Units");
+        for (String name : benchmarks.keySet()) {
+            if (!filters.isEmpty() && filters.stream().noneMatch(name::contains)) {
+                continue;
+            }
+            List<Double> samples = new ArrayList<>();
+            for (int fork = 0; fork < Math.max(forks, 1); fork++) {
+                if (forks == 0) {
+                    runChild(benchmarks.get(name).get(), warmups, iterations, samples);
+                } else {
+                    fork(name, warmups, iterations, samples);
+                }
+            }
+            report(name, samples);
+        }
+    }
+
+    private static void runChild(Workload workload, int warmups, int iterations) throws Exception {
+        List<Double> samples = new ArrayList<>();
+        runChild(workload, warmups, iterations, samples);
+        for (double sample : samples) {
+            System.out.println("sample " + sample);
+        }
+    }
+
+    private static void runChild(Workload workload, int warmups, int iterations, List<Double> samples) throws Exception {
+        for (int i = 0; i < warmups; i++) {
+            consume(workload.run());
+        }
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            Object result = workload.run();
+            long elapsed = System.nanoTime() - start;
+            consume(result);
+            samples.add(elapsed / 1e6);
+        }
+    }
+
+    private static void consume(Object result) {
+        sink = sink * 31 + System.identityHashCode(result);
+    }
+
+    private static void fork(String name, int warmups, int iterations, List<Double> samples) throws Exception {
+        List<String> command = javaCommand("Bench", "--child", name, "-wi", String.valueOf(warmups), "-i", String.valueOf(iterations));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("sample ")) {
+                    samples.add(Double.parseDouble(line.substring("sample ".length())));
+                }
+            }
+        }
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException(name + " failed with exit code " + process.exitValue());
+        }
+    }
+
+    private static List<String> javaCommand(String... args) {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.addAll(List.of(args));
+        return command;
+    }
+
+    private static void report(String name, List<Double> samples) {
+        double mean = samples.stream().mapToDouble(Double::doubleValue).average().orElse(Double.NaN);
+        double variance = samples.stream().mapToDouble(s -> (s - mean) * (s - mean)).sum() / Math.max(samples.size() - 1, 1);
+        double error = 2.576 * Math.sqrt(variance / samples.size());
+        System.out.printf("%-32s %6d %12.3f %s %8.3f %12s%n", name, samples.size(), mean, "+-", error, "ms/op");
+    }
+}
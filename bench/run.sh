@@ -0,0 +1,11 @@
+#!/bin/sh
+# Builds the interpreter together with the benchmarks and runs them in forked JVMs.
+# Usage: bench/run.sh [-wi warmups] [-i iterations] [-f forks] [name filter...]
+set -e
+cd "$(dirname "$0")/.."
+out="${BENCH_OUT:-/tmp/sympl-bench}"
+rm -rf "$out"
+mkdir -p "$out"
+javac -encoding UTF-8 -nowarn -d "$out" *.java bench/*.java
+echo "# $(git rev-parse --short HEAD 2>/dev/null || echo unknown) $(java -version 2>&1 | head -n 1)"
+exec java -Xms1g -Xmx1g -XX:+UseParallelGC -XX:-BackgroundCompilation -Djava.awt.headless=true -cp "$out" Bench "$@"